@@ -0,0 +1,170 @@
+package com.example.demo.benchmark;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.TechhubApplication;
+import com.example.demo.booking.ConflictDetector;
+import com.example.demo.booking.ResourceDimension;
+import com.example.demo.controllers.AppointmentController;
+import com.example.demo.entities.*;
+import com.example.demo.repositories.*;
+
+/**
+ * The booking path of a running application on H2: the conflict scan of the
+ * configured detector over the room, doctor and patient calendars, and
+ * {@link AppointmentController#createAppointment} turning down a colliding
+ * appointment (locks, validation and scan, nothing written, so the table
+ * keeps its size across iterations).
+ *
+ * Every room has its own doctor and is booked back to back in 30 minute
+ * appointments with every fourth slot free; half the scanned candidates fall
+ * in a free slot with a patient who has no appointment.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class BookingPathBenchmark {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2023, 4, 24, 8, 0);
+    private static final int CANDIDATES = 1024;
+    private static final int PATIENTS = 20000;
+
+    @Param({"1000", "100000", "1000000"})
+    int appointments;
+
+    @Param({"100"})
+    int rooms;
+
+    @Param({"query", "index", "bitmap"})
+    String detection;
+
+    private ConfigurableApplicationContext context;
+    private ConflictDetector conflictDetector;
+    private AppointmentController controller;
+    private Appointment[] scanned;
+    private Appointment[] colliding;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        context = new SpringApplicationBuilder(TechhubApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.datasource.url=jdbc:h2:mem:booking-path",
+                        "booking.conflict-detection=" + detection,
+                        "logging.level.root=warn")
+                .run();
+        conflictDetector = context.getBean(ConflictDetector.class);
+        controller = context.getBean(AppointmentController.class);
+
+        Room[] roomList = new Room[rooms];
+        Doctor[] doctors = new Doctor[rooms];
+        for (int r = 0; r < rooms; r++){
+            roomList[r] = context.getBean(RoomRepository.class).save(new Room("Room " + r));
+            doctors[r] = context.getBean(DoctorRepository.class).save(new Doctor("Perla " + r, "Amalia", 40, "p.amalia" + r + "@hospital.accwe"));
+        }
+        List<Patient> patients = new ArrayList<>(PATIENTS);
+        for (int i = 0; i < PATIENTS; i++){
+            patients.add(new Patient("Jose Luis " + i, "Olaya", 37, "j.olaya" + i + "@email.com"));
+        }
+        patients = context.getBean(PatientRepository.class).saveAll(patients);
+        Patient walkIn = context.getBean(PatientRepository.class).save(new Patient("Walk", "In", 30, "walk.in@email.com"));
+
+        int perRoom = appointments / rooms;
+        seed(context.getBean(JdbcTemplate.class), roomList, doctors, patients, perRoom);
+
+        Random random = new Random(42);
+        scanned = new Appointment[CANDIDATES];
+        colliding = new Appointment[CANDIDATES];
+        for (int c = 0; c < CANDIDATES; c++){
+            int r = random.nextInt(rooms);
+            int taken = random.nextInt(perRoom);
+            LocalDateTime startsAt = DAY.plusMinutes(30L * (taken / 3 * 4 + taken % 3));
+            colliding[c] = new Appointment(walkIn, doctors[r], roomList[r], startsAt, startsAt.plusMinutes(30));
+            if (c % 2 == 0){
+                scanned[c] = colliding[c];
+            } else {
+                LocalDateTime free = DAY.plusMinutes(30L * (random.nextInt(perRoom / 3 + 1) * 4 + 3));
+                scanned[c] = new Appointment(walkIn, doctors[r], roomList[r], free, free.plusMinutes(30));
+            }
+        }
+
+        // Also loads the in-memory detectors before the first iteration
+        if (conflictDetector.findConflict(colliding[0]).orElse(null) != ResourceDimension.ROOM
+                || conflictDetector.findConflict(scanned[1]).isPresent()){
+            throw new IllegalStateException("Seeded calendars do not match the candidates");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown(){
+        context.close();
+    }
+
+    @Benchmark
+    public boolean conflictScan(){
+        next = (next + 1) & (CANDIDATES - 1);
+        return conflictDetector.findConflict(scanned[next]).isPresent();
+    }
+
+    @Benchmark
+    public ResponseEntity<Appointment> createAppointment(){
+        next = (next + 1) & (CANDIDATES - 1);
+        return controller.createAppointment(colliding[next]);
+    }
+
+    // Straight JDBC batches, booking a million appointments one by one would take longer than the benchmark
+    private static void seed(JdbcTemplate jdbc, Room[] rooms, Doctor[] doctors, List<Patient> patients, int perRoom){
+        List<Object[]> batch = new ArrayList<>(10000);
+        long id = 1;
+        for (int r = 0; r < rooms.length; r++){
+            for (int i = 0, slot = 0; i < perRoom; slot++){
+                if (slot % 4 == 3){
+                    continue;
+                }
+                LocalDateTime startsAt = DAY.plusMinutes(30L * slot);
+                batch.add(new Object[]{id, Timestamp.valueOf(startsAt), Timestamp.valueOf(startsAt.plusMinutes(30)),
+                        patients.get((int) (id % patients.size())).getId(), doctors[r].getId(), rooms[r].getRoomName()});
+                if (batch.size() == 10000){
+                    insert(jdbc, batch);
+                }
+                id++;
+                i++;
+            }
+        }
+        insert(jdbc, batch);
+        // Ids the application hands out next must not collide with the seeded ones
+        jdbc.execute("alter sequence hibernate_sequence restart with " + (id + PATIENTS + 2 * rooms.length + 1));
+    }
+
+    private static void insert(JdbcTemplate jdbc, List<Object[]> batch){
+        jdbc.batchUpdate("insert into appointment (id, starts_at, finishes_at, patient_id, doctor_id, room_id) values (?, ?, ?, ?, ?, ?)", batch);
+        batch.clear();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.demo.benchmark;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.example.demo.JacksonConfiguration;
+import com.example.demo.entities.*;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
+import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
+
+/**
+ * The "HH:mm dd/MM/yyyy" codec of the application against the stock jsr310
+ * serializer and deserializer with the same formatter, on a large appointment
+ * list. Run with {@code -prof gc} to compare the allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DateTimeCodecBenchmark {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2023, 4, 24, 8, 0);
+
+    @Param({"formatter", "wire"})
+    String codec;
+
+    @Param({"100000"})
+    int appointments;
+
+    private ObjectMapper mapper;
+    private ObjectReader reader;
+    private List<Appointment> list;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mapper = "wire".equals(codec) ? PayloadFormatBenchmark.mapper(new JsonFactory()) : formatterMapper();
+        reader = mapper.readerFor(mapper.getTypeFactory().constructCollectionType(List.class, Appointment.class));
+
+        // Appointments refer to ids only, so the dates are most of what is encoded
+        Room room = new Room("Dermatology");
+        Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        list = new ArrayList<>(appointments);
+        for (int i = 0; i < appointments; i++){
+            LocalDateTime startsAt = DAY.plusMinutes(30L * i);
+            Appointment appointment = new Appointment(patient, doctor, room, startsAt, startsAt.plusMinutes(30));
+            appointment.setId(i + 1);
+            list.add(appointment);
+        }
+        encoded = mapper.writeValueAsBytes(list);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return mapper.writeValueAsBytes(list);
+    }
+
+    @Benchmark
+    public List<Appointment> decode() throws IOException {
+        return reader.readValue(encoded);
+    }
+
+    // The configuration before the wire codec: jsr310 with the formatter of the pattern
+    static ObjectMapper formatterMapper(){
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        new JacksonConfiguration().jackson2ObjectMapperBuilderCustomizer().customize(builder);
+        return builder.serializers(new LocalDateTimeSerializer(formatter))
+                .deserializers(new LocalDateTimeDeserializer(formatter))
+                .build();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.demo.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.demo.entities.*;
+
+/**
+ * Appointment lists shaped like a hospital's: few rooms, some doctors, many
+ * patients, every room booked back to back from the same morning.
+ */
+final class Hospital {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2023, 4, 24, 8, 0);
+
+    private Hospital(){
+    }
+
+    static List<Appointment> appointments(int count){
+        Room[] rooms = new Room[50];
+        for (int i = 0; i < rooms.length; i++){
+            rooms[i] = new Room("Room " + i);
+        }
+        Doctor[] doctors = new Doctor[500];
+        for (int i = 0; i < doctors.length; i++){
+            doctors[i] = new Doctor("Perla " + i, "Amalia", 30 + i % 30, "p.amalia" + i + "@hospital.accwe");
+            doctors[i].setId(i + 1);
+        }
+        Patient[] patients = new Patient[20000];
+        for (int i = 0; i < patients.length; i++){
+            patients[i] = new Patient("Jose Luis " + i, "Olaya", 20 + i % 60, "j.olaya" + i + "@email.com");
+            patients[i].setId(i + 1);
+        }
+        List<Appointment> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++){
+            LocalDateTime startsAt = DAY.plusMinutes(30L * (i / rooms.length));
+            Appointment appointment = new Appointment(patients[i % patients.length], doctors[i % doctors.length],
+                    rooms[i % rooms.length], startsAt, startsAt.plusMinutes(30));
+            appointment.setId(i + 1);
+            list.add(appointment);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.demo.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demo.entities.*;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+/**
+ * JSON encoding and decoding of each entity, one object and a large list,
+ * through the mapper {@code JacksonConfiguration} produces:
+ * <ul>
+ * <li>{@code application}: as configured, with the wire date time codec</li>
+ * <li>{@code afterburner} and {@code blackbird}: the same with the bytecode
+ * generating module registered</li>
+ * <li>{@code formatter}: the same with the stock jsr310 date time serializers
+ * the codec replaced, which only changes appointments</li>
+ * </ul>
+ * Single objects take about a microsecond or less, {@code -tu ns} shows them
+ * with more digits and {@code -prof gc} adds the allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JacksonEntityBenchmark {
+
+    @Param({"application", "afterburner", "blackbird", "formatter"})
+    String mapper;
+
+    @Param({"appointment", "patient", "doctor", "room"})
+    String entity;
+
+    @Param({"10000"})
+    int listSize;
+
+    private ObjectWriter writer;
+    private ObjectReader oneReader;
+    private ObjectReader listReader;
+    private Object one;
+    private List<?> list;
+    private byte[] oneEncoded;
+    private byte[] listEncoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = mapper(mapper);
+        List<Appointment> appointments = Hospital.appointments(listSize);
+        Class<?> type;
+        switch (entity){
+            case "patient":
+                type = Patient.class;
+                list = map(appointments, Appointment::getPatient);
+                break;
+            case "doctor":
+                type = Doctor.class;
+                list = map(appointments, Appointment::getDoctor);
+                break;
+            case "room":
+                type = Room.class;
+                list = map(appointments, Appointment::getRoom);
+                break;
+            default:
+                type = Appointment.class;
+                list = appointments;
+        }
+        one = list.get(0);
+
+        writer = objectMapper.writer();
+        oneReader = objectMapper.readerFor(type);
+        listReader = objectMapper.readerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, type));
+        oneEncoded = writer.writeValueAsBytes(one);
+        listEncoded = writer.writeValueAsBytes(list);
+    }
+
+    @Benchmark
+    public byte[] writeOne() throws IOException {
+        return writer.writeValueAsBytes(one);
+    }
+
+    @Benchmark
+    public Object readOne() throws IOException {
+        return oneReader.readValue(oneEncoded);
+    }
+
+    @Benchmark
+    public byte[] writeList() throws IOException {
+        return writer.writeValueAsBytes(list);
+    }
+
+    @Benchmark
+    public List<?> readList() throws IOException {
+        return listReader.readValue(listEncoded);
+    }
+
+    static ObjectMapper mapper(String name){
+        switch (name){
+            case "afterburner":
+                return PayloadFormatBenchmark.mapper(new JsonFactory()).registerModule(new AfterburnerModule());
+            case "blackbird":
+                return PayloadFormatBenchmark.mapper(new JsonFactory()).registerModule(new BlackbirdModule());
+            case "formatter":
+                return DateTimeCodecBenchmark.formatterMapper();
+            default:
+                return PayloadFormatBenchmark.mapper(new JsonFactory());
+        }
+    }
+
+    private static <T> List<T> map(List<Appointment> appointments, Function<Appointment, T> reference){
+        List<T> mapped = new ArrayList<>(appointments.size());
+        for (Appointment appointment: appointments){
+            mapped.add(reference.apply(appointment));
+        }
+        return mapped;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.demo.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.example.demo.JacksonConfiguration;
+import com.example.demo.entities.Appointment;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Encoding and decoding a full appointment list in each format the API
+ * negotiates, with mappers configured like the application's converters.
+ * The encoded size is reported as the payloadBytes secondary result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadFormatBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    String format;
+
+    @Param({"100000"})
+    int appointments;
+
+    private ObjectMapper mapper;
+    private ObjectReader reader;
+    private List<Appointment> list;
+    private byte[] encoded;
+
+    // JMH zeroes the counter at every iteration, so every call sets it
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Size {
+        public long payloadBytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        mapper = mapper(factory(format));
+        reader = mapper.readerFor(mapper.getTypeFactory().constructCollectionType(List.class, Appointment.class));
+
+        list = Hospital.appointments(appointments);
+        encoded = mapper.writeValueAsBytes(list);
+    }
+
+    @Benchmark
+    public byte[] encode(Size size) throws IOException {
+        byte[] bytes = mapper.writeValueAsBytes(list);
+        size.payloadBytes = bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public List<Appointment> decode(Size size) throws IOException {
+        size.payloadBytes = encoded.length;
+        return reader.readValue(encoded);
+    }
+
+    // The JSON mapper of the application with another factory, as JacksonConfiguration builds its converters
+    static ObjectMapper mapper(JsonFactory factory){
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        new JacksonConfiguration().jackson2ObjectMapperBuilderCustomizer().customize(builder);
+        return builder.factory(factory).build();
+    }
+
+    static JsonFactory factory(String format){
+        switch (format){
+            case "smile":
+                return new SmileFactory();
+            case "cbor":
+                return new CBORFactory();
+            default:
+                return new JsonFactory();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.demo.benchmark;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demo.booking.IntervalTree;
+import com.example.demo.booking.SlotBitmap;
+import com.example.demo.entities.*;
+
+/**
+ * Cost of one room occupancy check: the old scan calling
+ * {@link Appointment#overlaps} on every stored appointment, the interval
+ * tree of the "index" detector and the slot bitmap of the "bitmap" one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SlotCalendarBenchmark {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2023, 4, 24, 8, 0);
+    private static final int CANDIDATES = 1024;
+
+    @Param({"1000", "100000", "1000000"})
+    int appointments;
+
+    @Param({"100"})
+    int rooms;
+
+    private List<Appointment> stored;
+    private IntervalTree[] trees;
+    private SlotBitmap bitmap;
+    private Appointment[] candidates;
+    private int[] candidateRooms;
+    private String[] calendars;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(){
+        Room[] roomList = new Room[rooms];
+        trees = new IntervalTree[rooms];
+        calendars = new String[rooms];
+        for (int r = 0; r < rooms; r++){
+            roomList[r] = new Room("Room " + r);
+            trees[r] = new IntervalTree();
+            calendars[r] = "ROOM:Room " + r;
+        }
+        bitmap = new SlotBitmap(5);
+        stored = new ArrayList<>(appointments);
+
+        // Every room booked back to back in 30 minute appointments, leaving every fourth slot free
+        int perRoom = appointments / rooms;
+        long id = 1;
+        for (int r = 0; r < rooms; r++){
+            for (int i = 0, slot = 0; i < perRoom; slot++){
+                if (slot % 4 == 3){
+                    continue;
+                }
+                LocalDateTime startsAt = DAY.plusMinutes(30L * slot);
+                Appointment appointment = new Appointment(new Patient(), new Doctor(), roomList[r], startsAt, startsAt.plusMinutes(30));
+                appointment.setId(id);
+                stored.add(appointment);
+                trees[r].insert(startsAt, startsAt.plusMinutes(30), id);
+                bitmap.mark(calendars[r], startsAt, startsAt.plusMinutes(30));
+                id++;
+                i++;
+            }
+        }
+
+        Random random = new Random(42);
+        candidates = new Appointment[CANDIDATES];
+        candidateRooms = new int[CANDIDATES];
+        for (int c = 0; c < CANDIDATES; c++){
+            LocalDateTime startsAt = DAY.plusMinutes(30L * random.nextInt(perRoom * 4 / 3 + 1));
+            candidateRooms[c] = random.nextInt(rooms);
+            candidates[c] = new Appointment(new Patient(), new Doctor(), roomList[candidateRooms[c]], startsAt, startsAt.plusMinutes(30));
+        }
+    }
+
+    @Benchmark
+    public boolean overlapsScan(){
+        next = (next + 1) & (CANDIDATES - 1);
+        Appointment candidate = candidates[next];
+        for (Appointment appointment: stored){
+            if (candidate.overlaps(appointment)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean intervalTree(){
+        next = (next + 1) & (CANDIDATES - 1);
+        Appointment candidate = candidates[next];
+        return trees[candidateRooms[next]].overlapsAny(candidate.getStartsAt(), candidate.getFinishesAt());
+    }
+
+    @Benchmark
+    public boolean slotBitmap(){
+        next = (next + 1) & (CANDIDATES - 1);
+        Appointment candidate = candidates[next];
+        return bitmap.anySet(calendars[candidateRooms[next]], candidate.getStartsAt(), candidate.getFinishesAt());
+    }
+}
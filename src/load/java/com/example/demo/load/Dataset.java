@@ -0,0 +1,121 @@
+package com.example.demo.load;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import com.example.demo.booking.BatchResult;
+import com.example.demo.booking.BookingCoordinator;
+import com.example.demo.entities.*;
+import com.example.demo.repositories.*;
+
+/**
+ * Rooms, doctors, patients and appointments the load runs against. Every
+ * room is booked back to back in 30 minute appointments from {@link #DAY},
+ * no doctor or patient twice at the same time as long as there are at least
+ * as many of them as rooms.
+ *
+ * Bookings of the load land anywhere in twice the seeded span, so about
+ * half of them collide with the seeded ones.
+ */
+final class Dataset {
+
+    static final LocalDateTime DAY = LocalDateTime.of(2023, 4, 24, 8, 0);
+
+    private static final int CHUNK = 1000;
+
+    private final List<String> rooms = new ArrayList<>();
+    private final List<Long> doctors = new ArrayList<>();
+    private final List<Long> patients = new ArrayList<>();
+    private final List<Long> seeded = new ArrayList<>();
+
+    // Appointments nobody deleted yet, the deletes of the load take them from the front
+    private final ConcurrentLinkedDeque<Long> deletable = new ConcurrentLinkedDeque<>();
+
+    private int slots;
+
+    static Dataset seed(int roomCount, int doctorCount, int patientCount, int appointmentCount,
+            RoomRepository roomRepository, DoctorRepository doctorRepository,
+            PatientRepository patientRepository, BookingCoordinator bookingCoordinator){
+        Dataset dataset = new Dataset();
+        List<Room> rooms = new ArrayList<>();
+        for (int i = 0; i < roomCount; i++){
+            rooms.add(new Room("Room " + i));
+        }
+        rooms = roomRepository.saveAll(rooms);
+        List<Doctor> doctors = new ArrayList<>();
+        for (int i = 0; i < doctorCount; i++){
+            doctors.add(new Doctor("Perla " + i, "Amalia", 30 + i % 30, "p.amalia" + i + "@hospital.accwe"));
+        }
+        doctors = doctorRepository.saveAll(doctors);
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < patientCount; i++){
+            patients.add(new Patient("Jose Luis " + i, "Olaya", 20 + i % 60, "j.olaya" + i + "@email.com"));
+        }
+        patients = patientRepository.saveAll(patients);
+
+        List<Appointment> batch = new ArrayList<>(CHUNK);
+        for (int i = 0; i < appointmentCount; i++){
+            int slot = i / roomCount;
+            LocalDateTime startsAt = DAY.plusMinutes(30L * slot);
+            batch.add(new Appointment(patients.get(i % patientCount), doctors.get(i % doctorCount),
+                    rooms.get(i % roomCount), startsAt, startsAt.plusMinutes(30)));
+            if (batch.size() == CHUNK || i == appointmentCount - 1){
+                for (BatchResult.Entry entry: bookingCoordinator.bookAll(batch).getAccepted()){
+                    dataset.seeded.add(entry.getAppointment().getId());
+                }
+                batch = new ArrayList<>(CHUNK);
+            }
+        }
+
+        for (Room room: rooms){
+            dataset.rooms.add(room.getRoomName());
+        }
+        for (Doctor doctor: doctors){
+            dataset.doctors.add(doctor.getId());
+        }
+        for (Patient patient: patients){
+            dataset.patients.add(patient.getId());
+        }
+        dataset.deletable.addAll(dataset.seeded);
+        dataset.slots = Math.max(1, 2 * ((appointmentCount + roomCount - 1) / roomCount));
+        return dataset;
+    }
+
+    String room(Random random){
+        return rooms.get(random.nextInt(rooms.size()));
+    }
+
+    long doctor(Random random){
+        return doctors.get(random.nextInt(doctors.size()));
+    }
+
+    long patient(Random random){
+        return patients.get(random.nextInt(patients.size()));
+    }
+
+    // Some of them deleted by the time they are asked for
+    long appointment(Random random){
+        return seeded.isEmpty() ? 0L : seeded.get(random.nextInt(seeded.size()));
+    }
+
+    LocalDateTime slot(Random random){
+        return DAY.plusMinutes(30L * random.nextInt(slots));
+    }
+
+    void booked(long id){
+        deletable.addLast(id);
+    }
+
+    // 0 once everything is deleted, which the application answers with 404
+    long takeDeletable(){
+        Long id = deletable.pollFirst();
+        return id == null ? 0L : id;
+    }
+
+    int appointments(){
+        return seeded.size();
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.demo.load;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Latencies and outcomes of one endpoint, recorded concurrently by the
+ * workers. {@code latency} runs from the time the request was due, so time
+ * spent waiting behind slow requests counts (coordinated omission
+ * correction); {@code service} runs from the time it was actually sent.
+ */
+final class EndpointStats {
+
+    final Operation operation;
+    final Histogram latency = new ConcurrentHistogram(3);
+    final Histogram service = new ConcurrentHistogram(3);
+    final LongAdder clientErrors = new LongAdder();
+    final LongAdder serverErrors = new LongAdder();
+
+    EndpointStats(Operation operation){
+        this.operation = operation;
+    }
+
+    // A negative status is a request that got no answer at all
+    void record(long dueNanos, long sentNanos, long doneNanos, int status){
+        latency.recordValue(Math.max(0, doneNanos - dueNanos));
+        service.recordValue(Math.max(0, doneNanos - sentNanos));
+        if (status < 0 || status >= 500){
+            serverErrors.increment();
+        } else if (status >= 400){
+            clientErrors.increment();
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.demo.load;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+import com.example.demo.TechhubApplication;
+import com.example.demo.booking.BookingCoordinator;
+import com.example.demo.repositories.*;
+
+/**
+ * Boots the application as configured in src/main/resources on an in-memory
+ * H2 database, seeds it and puts it under open-loop load through its HTTP
+ * API, then reports latency and throughput per endpoint.
+ *
+ * Options are {@code --load.*} arguments, every other argument goes to the
+ * application ({@code --booking.conflict-detection=index} for instance):
+ * <ul>
+ * <li>{@code load.rate} requests per second (200), {@code load.duration}
+ * and {@code load.warmup} seconds (60, 10), {@code load.connections} (64)</li>
+ * <li>{@code load.rooms} (20), {@code load.doctors} (50),
+ * {@code load.patients} (2000) and {@code load.appointments} (10000) seeded</li>
+ * <li>{@code load.slo-p99} milliseconds an endpoint's p99 must stay under,
+ * the run exits with 1 otherwise (0, no objective)</li>
+ * <li>{@code load.seed} of the request mix (42) and {@code load.report}
+ * file the report is also written to (target/load-report.txt)</li>
+ * </ul>
+ */
+public final class LoadTest {
+
+    private LoadTest(){
+    }
+
+    public static void main(String[] args) throws Exception {
+        // The production configuration, only the database swapped for H2
+        defaultProperty("spring.config.location", "file:src/main/resources/");
+        defaultProperty("spring.datasource.url", "jdbc:h2:mem:load");
+        defaultProperty("spring.datasource.driver-class-name", "org.h2.Driver");
+        defaultProperty("spring.jpa.database-platform", "org.hibernate.dialect.H2Dialect");
+        defaultProperty("server.port", "0");
+        defaultProperty("logging.level.root", "warn");
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(TechhubApplication.class).run(args);
+        int exitCode;
+        try {
+            exitCode = run(context);
+        } finally {
+            context.close();
+        }
+        System.exit(exitCode);
+    }
+
+    private static int run(ConfigurableApplicationContext context) throws InterruptedException, IOException {
+        Environment env = context.getEnvironment();
+        double rate = env.getProperty("load.rate", Double.class, 200.0);
+        int duration = env.getProperty("load.duration", Integer.class, 60);
+        int warmup = env.getProperty("load.warmup", Integer.class, 10);
+        int connections = env.getProperty("load.connections", Integer.class, 64);
+        double slo = env.getProperty("load.slo-p99", Double.class, 0.0);
+        Path report = Paths.get(env.getProperty("load.report", "target/load-report.txt"));
+
+        long seeding = System.nanoTime();
+        Dataset dataset = Dataset.seed(env.getProperty("load.rooms", Integer.class, 20),
+                env.getProperty("load.doctors", Integer.class, 50),
+                env.getProperty("load.patients", Integer.class, 2000),
+                env.getProperty("load.appointments", Integer.class, 10000),
+                context.getBean(RoomRepository.class), context.getBean(DoctorRepository.class),
+                context.getBean(PatientRepository.class), context.getBean(BookingCoordinator.class));
+        System.out.printf("Seeded %d appointments in %d s%n", dataset.appointments(),
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - seeding));
+
+        // HttpURLConnection keeps 5 idle connections per host unless told otherwise
+        System.setProperty("http.maxConnections", String.valueOf(connections));
+        RestTemplate restTemplate = new RestTemplateBuilder()
+                .rootUri("http://localhost:" + env.getProperty("local.server.port"))
+                .errorHandler(new ResponseErrorHandler() {
+                    @Override
+                    public boolean hasError(ClientHttpResponse response){
+                        return false;
+                    }
+
+                    @Override
+                    public void handleError(ClientHttpResponse response){
+                    }
+                })
+                .build();
+
+        OpenLoop load = new OpenLoop(restTemplate, dataset, connections, env.getProperty("load.seed", Long.class, 42L));
+        System.out.printf("Warming up for %d s at %.0f requests/s%n", warmup, rate);
+        load.run(rate, warmup);
+        System.out.printf("Measuring for %d s at %.0f requests/s%n", duration, rate);
+        Map<Operation, EndpointStats> stats = load.run(rate, duration);
+        int unanswered = load.inFlight();
+        boolean drained = load.drain(60, TimeUnit.SECONDS);
+
+        StringBuilder text = new StringBuilder();
+        boolean met = report(stats, rate, duration, warmup, connections, slo, unanswered, drained, text);
+        System.out.print(text);
+        if (report.getParent() != null){
+            Files.createDirectories(report.getParent());
+        }
+        Files.write(report, text.toString().getBytes(StandardCharsets.UTF_8));
+        System.out.println("Report written to " + report);
+        return met ? 0 : 1;
+    }
+
+    // False when an endpoint misses the p99 objective or answers were still missing after the drain
+    static boolean report(Map<Operation, EndpointStats> stats, double rate, int duration, int warmup,
+            int connections, double slo, int unanswered, boolean drained, StringBuilder text){
+        Histogram all = new Histogram(3);
+        Histogram allService = new Histogram(3);
+        long clientErrors = 0;
+        long serverErrors = 0;
+        boolean met = drained;
+
+        text.append(String.format("%nOpen-loop load at %.0f requests/s for %d s after %d s of warm-up, %d connections%n",
+                rate, duration, warmup, connections));
+        text.append("Latency from the time each request was due (coordinated omission corrected), service time from when it was sent, ms\n\n");
+        text.append(String.format("%-45s %7s %8s %6s %6s %8s %8s %8s %8s %8s%n",
+                "endpoint", "count", "req/s", "4xx", "err", "p50", "p99", "p99.9", "max", "svc p99"));
+        for (EndpointStats endpoint: stats.values()){
+            all.add(endpoint.latency);
+            allService.add(endpoint.service);
+            clientErrors += endpoint.clientErrors.sum();
+            serverErrors += endpoint.serverErrors.sum();
+            boolean missed = slo > 0 && millis(endpoint.latency.getValueAtPercentile(99.0)) > slo;
+            met &= !missed;
+            text.append(row(endpoint.operation.endpoint, endpoint.latency, endpoint.service, duration,
+                    endpoint.clientErrors.sum(), endpoint.serverErrors.sum()))
+                    .append(missed ? "  over the p99 objective\n" : "\n");
+        }
+        text.append(row("all", all, allService, duration, clientErrors, serverErrors)).append("\n\n");
+
+        if (slo > 0){
+            text.append(String.format("p99 objective %.1f ms: %s%n", slo, met ? "met" : "missed"));
+        }
+        if (unanswered > 0){
+            text.append(String.format("%d requests were still waiting for an answer when the schedule ended%s%n",
+                    unanswered, drained ? "" : ", some never got one"));
+        }
+        return met;
+    }
+
+    private static String row(String name, Histogram latency, Histogram service, int duration, long clientErrors, long serverErrors){
+        return String.format("%-45s %7d %8.1f %6d %6d %8.2f %8.2f %8.2f %8.2f %8.2f",
+                name, latency.getTotalCount(), latency.getTotalCount() / (double) duration, clientErrors, serverErrors,
+                millis(latency.getValueAtPercentile(50.0)), millis(latency.getValueAtPercentile(99.0)),
+                millis(latency.getValueAtPercentile(99.9)), millis(latency.getMaxValue()),
+                millis(service.getValueAtPercentile(99.0)));
+    }
+
+    private static double millis(long nanos){
+        return nanos / 1e6;
+    }
+
+    private static void defaultProperty(String name, String value){
+        if (System.getProperty(name) == null){
+            System.setProperty(name, value);
+        }
+    }
+}
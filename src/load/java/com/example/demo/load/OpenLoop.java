@@ -0,0 +1,117 @@
+package com.example.demo.load;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Sends requests on a fixed schedule, whatever the application answers:
+ * request i is due at {@code start + i / rate}, and a slow answer never
+ * holds back the next one, it only makes the requests queue for a free
+ * connection. Latencies count from the due time.
+ */
+final class OpenLoop {
+
+    private final RestTemplate restTemplate;
+    private final Dataset dataset;
+    private final Random random;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ThreadPoolExecutor workers;
+
+    // Requests sent and not answered yet, across phases
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    OpenLoop(RestTemplate restTemplate, Dataset dataset, int connections, long seed){
+        this.restTemplate = restTemplate;
+        this.dataset = dataset;
+        this.random = new Random(seed);
+        AtomicInteger threads = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(connections, connections, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "load-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Runs one phase at {@code rate} requests per second for {@code seconds}.
+     * Requests still queued when the phase ends are recorded in it once they
+     * are answered.
+     */
+    Map<Operation, EndpointStats> run(double rate, int seconds){
+        Map<Operation, EndpointStats> stats = new EnumMap<>(Operation.class);
+        for (Operation operation: Operation.values()){
+            stats.put(operation, new EndpointStats(operation));
+        }
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        for (long i = 0; ; i++){
+            long due = start + (long) (i * 1e9 / rate);
+            if (due >= end){
+                break;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0){
+                LockSupport.parkNanos(wait);
+            }
+            Operation.Request request = Operation.pick(random).next(dataset, random);
+            EndpointStats endpoint = stats.get(request.operation);
+            inFlight.incrementAndGet();
+            workers.execute(() -> {
+                try {
+                    long sentAt = System.nanoTime();
+                    int status = send(request);
+                    endpoint.record(due, sentAt, System.nanoTime(), status);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        }
+        return stats;
+    }
+
+    int inFlight(){
+        return inFlight.get();
+    }
+
+    // Waits for the answers still outstanding, false when some are left after the timeout
+    boolean drain(long timeout, TimeUnit unit) throws InterruptedException {
+        workers.shutdown();
+        return workers.awaitTermination(timeout, unit);
+    }
+
+    private int send(Operation.Request request){
+        HttpHeaders headers = new HttpHeaders();
+        if (request.body != null){
+            headers.setContentType(MediaType.APPLICATION_JSON);
+        }
+        try {
+            ResponseEntity<String> response = restTemplate.exchange(request.uri, request.operation.method,
+                    new HttpEntity<>(request.body, headers), String.class);
+            if (request.operation == Operation.BOOK && response.getStatusCode().is2xxSuccessful()){
+                JsonNode booked = objectMapper.readTree(response.getBody());
+                dataset.booked(booked.get("id").asLong());
+            }
+            return response.getStatusCodeValue();
+        } catch (ResourceAccessException | IOException e){
+            return -1;
+        }
+    }
+}
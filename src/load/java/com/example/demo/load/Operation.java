@@ -0,0 +1,136 @@
+package com.example.demo.load;
+
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import org.springframework.http.HttpMethod;
+
+import com.example.demo.json.WireDateTime;
+
+/**
+ * The requests of the load and their share of it, in percent. Reads
+ * dominate like in front of a booking desk: lookups by id, short pages of
+ * lists and a doctor's calendar, with bookings and cancellations in between.
+ */
+enum Operation {
+
+    BOOK(HttpMethod.POST, "/api/appointments", 15) {
+        @Override
+        Request next(Dataset dataset, Random random){
+            LocalDateTime startsAt = dataset.slot(random);
+            return request("/api/appointments", "{\"patientId\":" + dataset.patient(random)
+                    + ",\"doctorId\":" + dataset.doctor(random)
+                    + ",\"roomName\":\"" + dataset.room(random) + "\""
+                    + ",\"startsAt\":\"" + WireDateTime.FORMATTER.format(startsAt) + "\""
+                    + ",\"finishesAt\":\"" + WireDateTime.FORMATTER.format(startsAt.plusMinutes(30)) + "\"}");
+        }
+    },
+    CANCEL(HttpMethod.DELETE, "/api/appointments/{id}", 5) {
+        @Override
+        Request next(Dataset dataset, Random random){
+            return request("/api/appointments/" + dataset.takeDeletable(), null);
+        }
+    },
+    APPOINTMENT(HttpMethod.GET, "/api/appointments/{id}", 15) {
+        @Override
+        Request next(Dataset dataset, Random random){
+            return request("/api/appointments/" + dataset.appointment(random), null);
+        }
+    },
+    DOCTOR(HttpMethod.GET, "/api/doctors/{id}", 10) {
+        @Override
+        Request next(Dataset dataset, Random random){
+            return request("/api/doctors/" + dataset.doctor(random), null);
+        }
+    },
+    PATIENT(HttpMethod.GET, "/api/patients/{id}", 10) {
+        @Override
+        Request next(Dataset dataset, Random random){
+            return request("/api/patients/" + dataset.patient(random), null);
+        }
+    },
+    ROOM(HttpMethod.GET, "/api/rooms/{roomName}", 5) {
+        @Override
+        Request next(Dataset dataset, Random random){
+            return request("/api/rooms/" + dataset.room(random), null);
+        }
+    },
+    DOCTOR_CALENDAR(HttpMethod.GET, "/api/appointments?doctorId={id}", 15) {
+        @Override
+        Request next(Dataset dataset, Random random){
+            return request("/api/appointments?doctorId=" + dataset.doctor(random) + "&limit=50&expand=none", null);
+        }
+    },
+    APPOINTMENTS(HttpMethod.GET, "/api/appointments", 5) {
+        @Override
+        Request next(Dataset dataset, Random random){
+            return request("/api/appointments?limit=50&after=" + dataset.appointment(random), null);
+        }
+    },
+    DOCTORS(HttpMethod.GET, "/api/doctors", 5) {
+        @Override
+        Request next(Dataset dataset, Random random){
+            return request("/api/doctors?limit=50", null);
+        }
+    },
+    PATIENTS(HttpMethod.GET, "/api/patients", 5) {
+        @Override
+        Request next(Dataset dataset, Random random){
+            return request("/api/patients?limit=50&after=" + dataset.patient(random), null);
+        }
+    },
+    ROOMS(HttpMethod.GET, "/api/rooms", 5) {
+        @Override
+        Request next(Dataset dataset, Random random){
+            return request("/api/rooms", null);
+        }
+    },
+    AVAILABILITY(HttpMethod.GET, "/api/rooms/{roomName}/availability", 5) {
+        @Override
+        Request next(Dataset dataset, Random random){
+            LocalDateTime from = dataset.slot(random);
+            return request("/api/rooms/" + dataset.room(random) + "/availability?from=" + WireDateTime.FORMATTER.format(from)
+                    + "&to=" + WireDateTime.FORMATTER.format(from.plusHours(8)) + "&minDuration=30", null);
+        }
+    };
+
+    static final class Request {
+        final Operation operation;
+        final String uri;
+        final String body;
+
+        Request(Operation operation, String uri, String body){
+            this.operation = operation;
+            this.uri = uri;
+            this.body = body;
+        }
+    }
+
+    final HttpMethod method;
+    final String endpoint;
+    final int weight;
+
+    Operation(HttpMethod method, String path, int weight){
+        this.method = method;
+        this.endpoint = method + " " + path;
+        this.weight = weight;
+    }
+
+    abstract Request next(Dataset dataset, Random random);
+
+    Request request(String uri, String body){
+        return new Request(this, uri, body);
+    }
+
+    // Picks by weight, the weights add up to 100
+    static Operation pick(Random random){
+        int at = random.nextInt(100);
+        for (Operation operation: values()){
+            at -= operation.weight;
+            if (at < 0){
+                return operation;
+            }
+        }
+        return values()[0];
+    }
+}
@@ -0,0 +1,327 @@
+package com.example.demo.booking;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.entities.Appointment;
+import com.example.demo.entities.AppointmentChange;
+import com.example.demo.entities.ChangeSequence;
+import com.example.demo.repositories.AppointmentChangeRepository;
+import com.example.demo.repositories.AppointmentRepository;
+import com.example.demo.repositories.ChangeSequenceRepository;
+
+/**
+ * Persistent log of appointment writes behind the delta sync endpoint.
+ *
+ * Writers record their changes inside the transaction of the write, as its
+ * last step. With {@code booking.lock-mode=local} versions are handed out
+ * from blocks reserved on a sequence row in short transactions of their
+ * own, so writers never wait for each other's commit. A version may then
+ * commit after a higher one: readers only serve versions below the lowest
+ * one still in flight in this instance, so a client never moves past a
+ * change it has not seen yet. With {@code booking.lock-mode=database},
+ * where several instances may write, the sequence row stays locked until
+ * the write commits, so versions commit in order across every instance.
+ *
+ * Recording a CLEARED change drops everything logged before it. Changes
+ * older than {@code changes.retention-days} are pruned, clients that synced
+ * before that have to start from scratch.
+ */
+@Component
+public class AppointmentChangeLog {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentChangeLog.class);
+
+    static final String SEQUENCE = "appointment";
+
+    // Highest version pruned for its age, the log is complete above it
+    static final String PRUNED = "appointment.pruned";
+
+    @Autowired
+    AppointmentChangeRepository changeRepository;
+
+    @Autowired
+    ChangeSequenceRepository sequenceRepository;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Value("${changes.version-block:50}")
+    int versionBlock;
+
+    @Value("${changes.retention-days:30}")
+    int retentionDays;
+
+    @Value("${changes.prune-minutes:60}")
+    long pruneMinutes;
+
+    @Value("${booking.lock-mode:local}")
+    String lockMode;
+
+    private boolean database;
+
+    private TransactionTemplate reserving;
+
+    private ScheduledExecutorService pruning;
+
+    // Guards the versions below
+    private final Object versions = new Object();
+
+    // Rest of the reserved block, next to hand out up to limit included
+    private long next = 1;
+    private long limit = 0;
+
+    // Highest version handed out by this instance
+    private long handedOut;
+
+    // First version of each write not committed or rolled back yet
+    private final NavigableSet<Long> inFlight = new TreeSet<>();
+
+    @PostConstruct
+    void init(){
+        database = "database".equalsIgnoreCase(lockMode);
+        reserving = new TransactionTemplate(transactionManager);
+        reserving.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        createIfMissing(SEQUENCE);
+        createIfMissing(PRUNED);
+        pruning = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "change-log-pruning");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (retentionDays > 0 && pruneMinutes > 0){
+            pruning.scheduleWithFixedDelay(this::prune, pruneMinutes, pruneMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    void shutdown(){
+        pruning.shutdownNow();
+    }
+
+    private void createIfMissing(String name){
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                if (!sequenceRepository.existsById(name)){
+                    sequenceRepository.saveAndFlush(new ChangeSequence(name));
+                }
+            });
+        } catch (DataIntegrityViolationException e){
+            // Another instance created it first
+        }
+    }
+
+    // The version the change was logged under
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long record(AppointmentChange.Type type, long appointmentId){
+        long version = handOut(1);
+        changeRepository.save(new AppointmentChange(version, type, appointmentId));
+        if (type == AppointmentChange.Type.CLEARED){
+            changeRepository.deleteOlderThan(version);
+        }
+        return version;
+    }
+
+    // The version of the first appointment, the others follow it in iteration order. 0 when there are none
+    @Transactional(propagation = Propagation.MANDATORY)
+    public long recordCreated(Collection<Appointment> appointments){
+        if (appointments.isEmpty()){
+            return 0;
+        }
+        long first = handOut(appointments.size());
+        long version = first;
+        List<AppointmentChange> changes = new ArrayList<>(appointments.size());
+        for (Appointment appointment: appointments){
+            changes.add(new AppointmentChange(version++, AppointmentChange.Type.CREATED, appointment.getId()));
+        }
+        changeRepository.saveAll(changes);
+        return first;
+    }
+
+    // Highest version logged and committed, 0 for an empty log
+    public long currentVersion(){
+        return Math.max(changeRepository.findMaxVersion().orElse(0L), prunedVersion());
+    }
+
+    // Clients that synced up to a lower version missed pruned changes
+    public long prunedVersion(){
+        return sequenceRepository.findById(PRUNED).map(ChangeSequence::getValue).orElse(0L);
+    }
+
+    /**
+     * Drops the changes recorded before {@code cutoff}, up to the first one
+     * that is still in flight.
+     *
+     * @return the number of changes dropped
+     */
+    public int pruneBefore(LocalDateTime cutoff){
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            ChangeSequence pruned = sequenceRepository.findByNameForUpdate(PRUNED)
+                    .orElseThrow(() -> new IllegalStateException("No change sequence " + PRUNED));
+            long upTo = changeRepository.findMaxVersionRecordedBefore(cutoff).orElse(0L);
+            synchronized (versions){
+                // A lower version committing after the prune would land below the pruned one
+                if (!inFlight.isEmpty()){
+                    upTo = Math.min(upTo, inFlight.first() - 1);
+                }
+            }
+            if (upTo <= pruned.getValue()){
+                return 0;
+            }
+            int dropped = changeRepository.deleteOlderThan(upTo + 1);
+            pruned.setValue(upTo);
+            return dropped;
+        });
+    }
+
+    private void prune(){
+        try {
+            pruneBefore(LocalDateTime.now().minusDays(retentionDays));
+        } catch (RuntimeException e){
+            log.warn("Could not prune the appointment change log", e);
+        }
+    }
+
+    /**
+     * At most {@code limit} logged changes after {@code since}, folded to the
+     * last one per appointment, with the appointments that were created.
+     *
+     * @return empty when {@code since} is ahead of the log or behind what was pruned, the client
+     *         has to sync from scratch
+     */
+    @Transactional(readOnly = true)
+    public Optional<ChangeFeed> changesSince(long since, int limit){
+        // Before the first read, whatever commits later is either in flight now or handed out afterwards
+        long below;
+        long seen;
+        synchronized (versions){
+            below = inFlight.isEmpty() ? Long.MAX_VALUE : inFlight.first();
+            seen = handedOut;
+        }
+        if (since > currentVersion() || since < prunedVersion()){
+            return Optional.empty();
+        }
+        List<AppointmentChange> page = changeRepository.findByVersionGreaterThanAndVersionLessThanOrderByVersionAsc(
+                since, below, PageRequest.of(0, limit + 1));
+        boolean more = page.size() > limit;
+        if (more){
+            page = page.subList(0, limit);
+        }
+        // Versions handed out meanwhile may commit before lower ones, leave them to the next call
+        synchronized (versions){
+            if (handedOut != seen){
+                int kept = 0;
+                while (kept < page.size() && page.get(kept).getVersion() <= seen){
+                    kept++;
+                }
+                more |= kept < page.size();
+                page = page.subList(0, kept);
+            }
+        }
+        long upTo = page.isEmpty() ? since : page.get(page.size() - 1).getVersion();
+        ChangeFeed feed = new ChangeFeed(upTo, more);
+
+        // Nothing before the last CLEARED matters to the client
+        AppointmentChange cleared = null;
+        Map<Long, AppointmentChange> latest = new LinkedHashMap<>();
+        for (AppointmentChange change: page){
+            if (change.getType() == AppointmentChange.Type.CLEARED){
+                cleared = change;
+                latest.clear();
+            } else {
+                latest.remove(change.getAppointmentId());
+                latest.put(change.getAppointmentId(), change);
+            }
+        }
+
+        List<Long> created = latest.values().stream()
+                .filter(change -> change.getType() == AppointmentChange.Type.CREATED)
+                .map(AppointmentChange::getAppointmentId)
+                .collect(Collectors.toList());
+        Map<Long, Appointment> appointments = created.isEmpty() ? new LinkedHashMap<>()
+                : appointmentRepository.findByIdIn(created).stream().collect(Collectors.toMap(Appointment::getId, Function.identity()));
+
+        if (cleared != null){
+            feed.getChanges().add(new ChangeFeed.Entry(cleared.getVersion(), cleared.getType(), 0, null));
+        }
+        for (AppointmentChange change: latest.values()){
+            Appointment appointment = appointments.get(change.getAppointmentId());
+            // Created and deleted again after this page, the tombstone follows on a later page
+            if (change.getType() == AppointmentChange.Type.CREATED && appointment == null){
+                continue;
+            }
+            feed.getChanges().add(new ChangeFeed.Entry(change.getVersion(), change.getType(), change.getAppointmentId(), appointment));
+        }
+        return Optional.of(feed);
+    }
+
+    // Hands out count consecutive versions, in flight until the surrounding transaction ends
+    private long handOut(int count){
+        if (database){
+            // The row stays locked until the write commits, every instance commits its versions in order
+            return reserve(count) - count + 1;
+        }
+        long first;
+        synchronized (versions){
+            if (next + count - 1 > limit){
+                long size = Math.max(count, versionBlock);
+                limit = reserving.execute(status -> reserve(size));
+                next = limit - size + 1;
+            }
+            first = next;
+            next += count;
+            handedOut = next - 1;
+            inFlight.add(first);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status){
+                synchronized (versions){
+                    inFlight.remove(first);
+                }
+            }
+        });
+        return first;
+    }
+
+    // Locks the sequence row until the surrounding transaction ends, returns the last version reserved
+    private long reserve(long size){
+        ChangeSequence sequence = sequenceRepository.findByNameForUpdate(SEQUENCE)
+                .orElseThrow(() -> new IllegalStateException("No change sequence " + SEQUENCE));
+        sequence.setValue(sequence.getValue() + size);
+        return sequence.getValue();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.demo.booking;
+
+import com.example.demo.entities.Appointment;
+
+/**
+ * Published by {@link BookingCoordinator} once a booking or a deletion has
+ * been written. CLEARED stands for deleting every appointment and carries no
+ * appointment. The version is the one the write was logged under in the
+ * {@link AppointmentChangeLog}, 0 for an event that was not logged.
+ */
+public class AppointmentEvent {
+
+    public enum Type { CREATED, DELETED, CLEARED }
+
+    private final Type type;
+    private final Appointment appointment;
+    private final long version;
+
+    public AppointmentEvent(Type type, Appointment appointment){
+        this(type, appointment, 0);
+    }
+
+    public AppointmentEvent(Type type, Appointment appointment, long version){
+        this.type = type;
+        this.appointment = appointment;
+        this.version = version;
+    }
+
+    public Type getType(){
+        return this.type;
+    }
+
+    public Appointment getAppointment(){
+        return this.appointment;
+    }
+
+    public long getVersion(){
+        return this.version;
+    }
+}
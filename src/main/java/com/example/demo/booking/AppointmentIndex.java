@@ -0,0 +1,149 @@
+package com.example.demo.booking;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.entities.Appointment;
+import com.example.demo.repositories.AppointmentRepository;
+
+/**
+ * In-memory interval index of appointments, one {@link IntervalTree} per room,
+ * doctor and patient of the checked {@link ResourceDimension}s.
+ * It is loaded from the repository on first use and has to be told about
+ * every save and delete afterwards. Adding an appointment the load already
+ * picked up leaves the index unchanged.
+ */
+@Component
+@ConditionalOnProperty(name = "booking.conflict-detection", havingValue = "index")
+public class AppointmentIndex implements ConflictDetector {
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Value("${booking.conflict-dimensions:room,doctor,patient}")
+    String conflictDimensions;
+
+    private Set<ResourceDimension> dimensions;
+
+    private final Map<ResourceDimension, ConcurrentMap<Object, IntervalTree>> trees = new EnumMap<>(ResourceDimension.class);
+
+    private volatile boolean loaded;
+
+    @PostConstruct
+    void init(){
+        dimensions = ResourceDimension.parse(conflictDimensions);
+        for (ResourceDimension dimension: dimensions){
+            trees.put(dimension, new ConcurrentHashMap<>());
+        }
+    }
+
+    @Override
+    public Set<ResourceDimension> dimensions(){
+        return this.dimensions;
+    }
+
+    @Override
+    public Optional<ResourceDimension> findConflict(Appointment candidate){
+        ensureLoaded();
+        for (ResourceDimension dimension: dimensions){
+            IntervalTree tree = treeFor(dimension, candidate);
+            if (tree == null){
+                continue;
+            }
+            synchronized (tree){
+                if (tree.overlapsAny(candidate.getStartsAt(), candidate.getFinishesAt())){
+                    return Optional.of(dimension);
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    // Ids of the appointments in the candidate's room that intersect it
+    public List<Long> findOverlapping(Appointment candidate){
+        ensureLoaded();
+        IntervalTree tree = treeFor(ResourceDimension.ROOM, candidate);
+        if (tree == null){
+            return Collections.emptyList();
+        }
+        synchronized (tree){
+            return tree.findOverlapping(candidate.getStartsAt(), candidate.getFinishesAt());
+        }
+    }
+
+    @Override
+    public void add(Appointment appointment){
+        ensureLoaded();
+        insert(appointment);
+    }
+
+    @Override
+    public void remove(Appointment appointment){
+        ensureLoaded();
+        for (ResourceDimension dimension: dimensions){
+            IntervalTree tree = treeFor(dimension, appointment);
+            if (tree == null){
+                continue;
+            }
+            synchronized (tree){
+                tree.remove(appointment.getStartsAt(), appointment.getId());
+            }
+        }
+    }
+
+    @Override
+    public void clear(){
+        synchronized (this){
+            for (ConcurrentMap<Object, IntervalTree> byKey: trees.values()){
+                byKey.clear();
+            }
+            loaded = true;
+        }
+    }
+
+    private IntervalTree treeFor(ResourceDimension dimension, Appointment appointment){
+        ConcurrentMap<Object, IntervalTree> byKey = trees.get(dimension);
+        Object key = dimension.keyOf(appointment);
+        return byKey == null || key == null ? null : byKey.get(key);
+    }
+
+    private void insert(Appointment appointment){
+        for (ResourceDimension dimension: dimensions){
+            Object key = dimension.keyOf(appointment);
+            if (key == null){
+                continue;
+            }
+            IntervalTree tree = trees.get(dimension).computeIfAbsent(key, k -> new IntervalTree());
+            synchronized (tree){
+                tree.insert(appointment.getStartsAt(), appointment.getFinishesAt(), appointment.getId());
+            }
+        }
+    }
+
+    private void ensureLoaded(){
+        if (loaded){
+            return;
+        }
+        synchronized (this){
+            if (!loaded){
+                for (Appointment a: appointmentRepository.findAll()){
+                    insert(a);
+                }
+                loaded = true;
+            }
+        }
+    }
+}
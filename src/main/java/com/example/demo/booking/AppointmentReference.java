@@ -0,0 +1,99 @@
+package com.example.demo.booking;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import com.example.demo.entities.Appointment;
+
+/**
+ * An appointment that refers to its patient, doctor and room by id only,
+ * as accepted and returned by POST /api/appointments.
+ */
+public class AppointmentReference {
+
+    private long id;
+
+    private Long patientId;
+
+    private Long doctorId;
+
+    private String roomName;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime startsAt;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime finishesAt;
+
+    public AppointmentReference(){
+        super();
+    }
+
+    public AppointmentReference(long id, Long patientId, Long doctorId, String roomName,
+            LocalDateTime startsAt, LocalDateTime finishesAt){
+        this.id = id;
+        this.patientId = patientId;
+        this.doctorId = doctorId;
+        this.roomName = roomName;
+        this.startsAt = startsAt;
+        this.finishesAt = finishesAt;
+    }
+
+    // Reads only the ids of the associations, so lazy references stay uninitialized
+    public static AppointmentReference of(Appointment appointment){
+        return new AppointmentReference(appointment.getId(),
+                appointment.getPatient() == null ? null : appointment.getPatient().getId(),
+                appointment.getDoctor() == null ? null : appointment.getDoctor().getId(),
+                appointment.getRoom() == null ? null : appointment.getRoom().getRoomName(),
+                appointment.getStartsAt(), appointment.getFinishesAt());
+    }
+
+    public long getId(){
+        return this.id;
+    }
+
+    public void setId(long id){
+        this.id = id;
+    }
+
+    public Long getPatientId(){
+        return this.patientId;
+    }
+
+    public void setPatientId(Long patientId){
+        this.patientId = patientId;
+    }
+
+    public Long getDoctorId(){
+        return this.doctorId;
+    }
+
+    public void setDoctorId(Long doctorId){
+        this.doctorId = doctorId;
+    }
+
+    public String getRoomName(){
+        return this.roomName;
+    }
+
+    public void setRoomName(String roomName){
+        this.roomName = roomName;
+    }
+
+    public LocalDateTime getStartsAt(){
+        return this.startsAt;
+    }
+
+    public void setStartsAt(LocalDateTime startsAt){
+        this.startsAt = startsAt;
+    }
+
+    public LocalDateTime getFinishesAt(){
+        return this.finishesAt;
+    }
+
+    public void setFinishesAt(LocalDateTime finishesAt){
+        this.finishesAt = finishesAt;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.demo.booking;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import com.example.demo.entities.Appointment;
+
+/**
+ * Outcome of a batch booking. Every entry carries the position of the
+ * appointment in the request, rejected ones also the reason.
+ */
+public class BatchResult {
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Entry {
+        private final int index;
+        private final Appointment appointment;
+        private final String reason;
+
+        public Entry(int index, Appointment appointment, String reason){
+            this.index = index;
+            this.appointment = appointment;
+            this.reason = reason;
+        }
+
+        public int getIndex(){
+            return this.index;
+        }
+
+        public Appointment getAppointment(){
+            return this.appointment;
+        }
+
+        public String getReason(){
+            return this.reason;
+        }
+    }
+
+    private final List<Entry> accepted = new ArrayList<>();
+    private final List<Entry> rejected = new ArrayList<>();
+
+    public List<Entry> getAccepted(){
+        return this.accepted;
+    }
+
+    public List<Entry> getRejected(){
+        return this.rejected;
+    }
+
+    void accept(int index, Appointment appointment){
+        accepted.add(new Entry(index, appointment, null));
+    }
+
+    void reject(int index, String reason){
+        rejected.add(new Entry(index, null, reason));
+    }
+}
@@ -0,0 +1,494 @@
+package com.example.demo.booking;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityNotFoundException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.cache.TableVersions;
+import com.example.demo.cache.TableVersions.Table;
+import com.example.demo.entities.Appointment;
+import com.example.demo.entities.AppointmentChange;
+import com.example.demo.entities.Room;
+import com.example.demo.repositories.AppointmentRepository;
+import com.example.demo.repositories.DoctorRepository;
+import com.example.demo.repositories.PatientRepository;
+import com.example.demo.repositories.RoomRepository;
+
+/**
+ * Runs the conflict check and the insert of a booking as one step per room,
+ * doctor and patient, for each {@link ResourceDimension} that is checked.
+ *
+ * With {@code booking.lock-mode=local} (default) bookings sharing any of
+ * those resources are serialized on striped locks inside this JVM. With
+ * {@code booking.lock-mode=database} the check and the insert share one
+ * transaction holding row locks on the room, the doctor and the patient,
+ * which also holds across several instances on the same database. Locks are
+ * always taken in the same order, so two bookings never deadlock.
+ *
+ * Every write is logged in the {@link AppointmentChangeLog} within its
+ * transaction and announced with an {@link AppointmentEvent} after it.
+ */
+@Component
+public class BookingCoordinator {
+
+    private static final Logger log = LoggerFactory.getLogger(BookingCoordinator.class);
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    ConflictDetector conflictDetector;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    TableVersions tableVersions;
+
+    @Autowired
+    AppointmentChangeLog changeLog;
+
+    @Value("${booking.lock-stripes:64}")
+    int lockStripes;
+
+    @Value("${booking.lock-mode:local}")
+    String lockMode;
+
+    private StripedLocks locks;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init(){
+        locks = new StripedLocks(lockStripes);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Books an appointment as sent by clients, with whole patient, doctor and
+     * room objects. Patients and doctors without an id are created along with
+     * it, a room that does not exist yet is created first.
+     *
+     * @return empty when the appointment collides with one already booked
+     */
+    public Optional<Appointment> book(Appointment appointment){
+        return book(appointment, true);
+    }
+
+    /**
+     * Books an appointment of existing patient, doctor and room, bound as
+     * references by id. Nothing but the appointment row is written and none
+     * of the three is read, unless row locks are taken on them.
+     *
+     * @return empty when the appointment collides with one already booked
+     * @throws EntityNotFoundException or {@link DataIntegrityViolationException}
+     *         when one of them does not exist
+     */
+    public Optional<Appointment> book(long patientId, long doctorId, String roomName,
+            LocalDateTime startsAt, LocalDateTime finishesAt){
+        Appointment appointment = new Appointment(patientRepository.getReferenceById(patientId),
+                doctorRepository.getReferenceById(doctorId), roomRepository.getReferenceById(roomName), startsAt, finishesAt);
+        return book(appointment, false);
+    }
+
+    private Optional<Appointment> book(Appointment appointment, boolean attach){
+        if ("database".equalsIgnoreCase(lockMode)){
+            return bookWithRowLock(appointment, attach);
+        }
+        int[] held = locks.lock(lockKeys(Collections.singletonList(appointment)));
+        try {
+            if (conflictDetector.overlaps(appointment)){
+                return Optional.empty();
+            }
+            if (attach){
+                createRoomIfMissing(appointment.getRoom().getRoomName());
+            }
+            AppointmentEvent created = transactionTemplate.execute(status -> {
+                if (attach){
+                    attachPeople(appointment);
+                }
+                Appointment inserted = appointmentRepository.save(appointment);
+                return new AppointmentEvent(AppointmentEvent.Type.CREATED, inserted,
+                        changeLog.record(AppointmentChange.Type.CREATED, inserted.getId()));
+            });
+            conflictDetector.add(created.getAppointment());
+            eventPublisher.publishEvent(created);
+            return Optional.of(created.getAppointment());
+        } finally {
+            locks.unlock(held);
+        }
+    }
+
+    public void cancel(Appointment appointment){
+        int[] held = locks.lock(lockKeys(Collections.singletonList(appointment)));
+        try {
+            long version = transactionTemplate.execute(status -> {
+                appointmentRepository.deleteById(appointment.getId());
+                return changeLog.record(AppointmentChange.Type.DELETED, appointment.getId());
+            });
+            conflictDetector.remove(appointment);
+            eventPublisher.publishEvent(new AppointmentEvent(AppointmentEvent.Type.DELETED, appointment, version));
+        } finally {
+            locks.unlock(held);
+        }
+    }
+
+    public void cancelAll(){
+        locks.lockAll();
+        try {
+            long version = transactionTemplate.execute(status -> {
+                // Other instances only wait on the row locks, every booking takes its room's first
+                if ("database".equalsIgnoreCase(lockMode)){
+                    roomRepository.findAllForUpdate();
+                }
+                appointmentRepository.deleteAll();
+                return changeLog.record(AppointmentChange.Type.CLEARED, 0);
+            });
+            conflictDetector.clear();
+            eventPublisher.publishEvent(new AppointmentEvent(AppointmentEvent.Type.CLEARED, null, version));
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    /**
+     * Books a whole batch, one room at a time under that room's lock. Each
+     * room reads its existing appointments with a single range query, checks
+     * all candidates with a {@link SweepLine} and inserts the accepted ones
+     * together, so Hibernate can send them as JDBC batches. Doctors and
+     * patients are checked per candidate, first against the earlier entries
+     * of the batch and then with an indexed lookup. When the transaction of a
+     * room fails, its entries are rejected and the rooms booked before it
+     * stay booked.
+     */
+    public BatchResult bookAll(List<Appointment> appointments){
+        BatchResult result = new BatchResult();
+        Map<String, List<Integer>> rooms = new TreeMap<>();
+
+        for (int i = 0; i < appointments.size(); i++){
+            Appointment appointment = appointments.get(i);
+            // saveAll would merge an entry carrying an id over the appointment stored under it
+            if (appointment.getId() != 0){
+                result.reject(i, "id must not be set");
+            } else if (appointment.getRoom() == null || appointment.getRoom().getRoomName() == null){
+                result.reject(i, "room is required");
+            } else if (appointment.getStartsAt() == null || appointment.getFinishesAt() == null
+                    || !appointment.getStartsAt().isBefore(appointment.getFinishesAt())){
+                result.reject(i, "startsAt must be before finishesAt");
+            } else if (appointment.getStartsAt().plus(Appointment.MAX_DURATION).isBefore(appointment.getFinishesAt())){
+                result.reject(i, "lasts longer than " + Appointment.MAX_DURATION.toHours() + " hours");
+            } else {
+                rooms.computeIfAbsent(appointment.getRoom().getRoomName(), name -> new ArrayList<>()).add(i);
+            }
+        }
+
+        // Doctors and patients taken by accepted entries, keyed like the locks, holding batch indexes
+        Map<String, IntervalTree> taken = new HashMap<>();
+        for (Map.Entry<String, List<Integer>> room: rooms.entrySet()){
+            bookRoom(room.getKey(), room.getValue(), appointments, taken, result);
+        }
+        return result;
+    }
+
+    private void bookRoom(String roomName, List<Integer> indexes, List<Appointment> appointments,
+            Map<String, IntervalTree> taken, BatchResult result){
+        boolean database = "database".equalsIgnoreCase(lockMode);
+        Set<ResourceDimension> dimensions = conflictDetector.dimensions();
+        indexes.sort(Comparator.comparing((Integer i) -> appointments.get(i).getStartsAt()).thenComparing(i -> i));
+
+        List<Appointment> candidates = new ArrayList<>(indexes.size());
+        Map<Appointment, Integer> positions = new IdentityHashMap<>();
+        for (Integer i: indexes){
+            candidates.add(appointments.get(i));
+            positions.put(appointments.get(i), i);
+        }
+        LocalDateTime from = candidates.get(0).getStartsAt();
+        LocalDateTime to = from;
+        for (Appointment candidate: candidates){
+            if (candidate.getFinishesAt().isAfter(to)){
+                to = candidate.getFinishesAt();
+            }
+        }
+        LocalDateTime until = to;
+
+        // Reasons of the entries this room rejects, only reported once its transaction commits
+        Map<Integer, String> rejected = new LinkedHashMap<>();
+        int[] held = null;
+        if (!database){
+            List<String> keys = lockKeys(candidates);
+            keys.add(ResourceDimension.ROOM + ":" + roomName);
+            held = locks.lock(keys);
+        }
+        try {
+            List<AppointmentEvent> accepted;
+            try {
+                if (database){
+                    createRoomIfMissing(roomName);
+                }
+                accepted = transactionTemplate.execute(status -> {
+                    Room room = database
+                            ? roomRepository.findByRoomNameForUpdate(roomName).get()
+                            : roomRepository.findByRoomName(roomName).orElseGet(() -> {
+                                tableVersions.bumpAfterCommit(Table.ROOMS);
+                                return roomRepository.save(new Room(roomName));
+                            });
+                    if (database){
+                        lockPeople(candidates);
+                    }
+
+                    Predicate<Appointment> admit = candidate -> {
+                        String reason = findPeopleConflict(candidate, positions.get(candidate), taken, database);
+                        if (reason != null){
+                            rejected.put(positions.get(candidate), reason);
+                            return false;
+                        }
+                        return true;
+                    };
+                    List<Appointment> conflicts;
+                    if (dimensions.contains(ResourceDimension.ROOM)){
+                        List<Appointment> existing = new ArrayList<>(appointmentRepository.findOverlapping(roomName, from, until));
+                        existing.sort(Comparator.comparing(Appointment::getStartsAt));
+                        conflicts = SweepLine.firstConflicts(existing, candidates, admit);
+                    } else {
+                        conflicts = new ArrayList<>(candidates.size());
+                        for (Appointment candidate: candidates){
+                            conflicts.add(admit.test(candidate) ? null : candidate);
+                        }
+                    }
+
+                    List<Appointment> fits = new ArrayList<>();
+                    for (int c = 0; c < candidates.size(); c++){
+                        Appointment candidate = candidates.get(c);
+                        Appointment conflict = conflicts.get(c);
+                        if (conflict == null){
+                            candidate.setRoom(room);
+                            attachPeople(candidate);
+                            fits.add(candidate);
+                        } else if (conflict == candidate){
+                            // Already rejected for its doctor or patient
+                        } else if (positions.containsKey(conflict)){
+                            rejected.put(positions.get(candidate), "overlaps appointment " + positions.get(conflict) + " of this batch");
+                        } else {
+                            rejected.put(positions.get(candidate), "overlaps appointment " + conflict.getId());
+                        }
+                    }
+                    appointmentRepository.saveAll(fits);
+                    long version = changeLog.recordCreated(fits);
+                    List<AppointmentEvent> created = new ArrayList<>(fits.size());
+                    for (Appointment fit: fits){
+                        created.add(new AppointmentEvent(AppointmentEvent.Type.CREATED, fit, version++));
+                    }
+                    return created;
+                });
+            } catch (RuntimeException e){
+                log.warn("Could not book {} appointments in room {}", indexes.size(), roomName, e);
+                release(candidates, positions, taken);
+                for (Integer i: indexes){
+                    result.reject(i, "could not be booked, try again");
+                }
+                return;
+            }
+            for (Map.Entry<Integer, String> entry: rejected.entrySet()){
+                result.reject(entry.getKey(), entry.getValue());
+            }
+            for (AppointmentEvent created: accepted){
+                conflictDetector.add(created.getAppointment());
+                eventPublisher.publishEvent(created);
+                result.accept(positions.get(created.getAppointment()), created.getAppointment());
+            }
+        } finally {
+            if (held != null){
+                locks.unlock(held);
+            }
+        }
+    }
+
+    // Why the doctor or the patient of a batch entry is not free, null when both are
+    private String findPeopleConflict(Appointment candidate, int index, Map<String, IntervalTree> taken, boolean database){
+        boolean stored = false;
+        for (ResourceDimension dimension: conflictDetector.dimensions()){
+            Object key = dimension.keyOf(candidate);
+            if (dimension == ResourceDimension.ROOM || key == null){
+                continue;
+            }
+            stored = true;
+            IntervalTree tree = taken.get(dimension + ":" + key);
+            if (tree != null){
+                List<Long> earlier = tree.findOverlapping(candidate.getStartsAt(), candidate.getFinishesAt());
+                if (!earlier.isEmpty()){
+                    return name(dimension) + " booked by appointment " + earlier.get(0) + " of this batch";
+                }
+            }
+        }
+        if (!stored){
+            return null;
+        }
+        Optional<ResourceDimension> busy = database
+                ? QueryConflictDetector.query(appointmentRepository, conflictDetector.dimensions(), candidate)
+                : conflictDetector.findConflict(candidate);
+        if (busy.isPresent()){
+            return name(busy.get()) + " already booked at that time";
+        }
+        for (ResourceDimension dimension: conflictDetector.dimensions()){
+            Object key = dimension.keyOf(candidate);
+            if (dimension != ResourceDimension.ROOM && key != null){
+                taken.computeIfAbsent(dimension + ":" + key, k -> new IntervalTree())
+                        .insert(candidate.getStartsAt(), candidate.getFinishesAt(), index);
+            }
+        }
+        return null;
+    }
+
+    // Gives back what a rolled back room's entries took, later rooms may book those doctors and patients
+    private void release(List<Appointment> candidates, Map<Appointment, Integer> positions, Map<String, IntervalTree> taken){
+        for (Appointment candidate: candidates){
+            for (ResourceDimension dimension: conflictDetector.dimensions()){
+                Object key = dimension.keyOf(candidate);
+                IntervalTree tree = key == null ? null : taken.get(dimension + ":" + key);
+                if (dimension != ResourceDimension.ROOM && tree != null){
+                    tree.remove(candidate.getStartsAt(), positions.get(candidate));
+                }
+            }
+        }
+    }
+
+    private static String name(ResourceDimension dimension){
+        return dimension.name().toLowerCase(Locale.ROOT);
+    }
+
+    // One lock key per checked resource, e.g. "ROOM:Oncology" or "DOCTOR:7"
+    private List<String> lockKeys(Collection<Appointment> appointments){
+        List<String> keys = new ArrayList<>();
+        for (Appointment appointment: appointments){
+            for (ResourceDimension dimension: conflictDetector.dimensions()){
+                Object key = dimension.keyOf(appointment);
+                if (key != null){
+                    keys.add(dimension + ":" + key);
+                }
+            }
+        }
+        return keys;
+    }
+
+    // Row locks on doctors, then patients, each by ascending id, after the room row
+    private void lockPeople(List<Appointment> appointments){
+        Set<ResourceDimension> dimensions = conflictDetector.dimensions();
+        if (dimensions.contains(ResourceDimension.DOCTOR)){
+            Map<Long, List<Appointment>> byDoctor = new TreeMap<>();
+            for (Appointment appointment: appointments){
+                Object id = ResourceDimension.DOCTOR.keyOf(appointment);
+                if (id != null){
+                    byDoctor.computeIfAbsent((Long) id, k -> new ArrayList<>()).add(appointment);
+                }
+            }
+            for (Map.Entry<Long, List<Appointment>> doctor: byDoctor.entrySet()){
+                doctorRepository.findByIdForUpdate(doctor.getKey()).ifPresent(d -> doctor.getValue().forEach(a -> a.setDoctor(d)));
+            }
+        }
+        if (dimensions.contains(ResourceDimension.PATIENT)){
+            Map<Long, List<Appointment>> byPatient = new TreeMap<>();
+            for (Appointment appointment: appointments){
+                Object id = ResourceDimension.PATIENT.keyOf(appointment);
+                if (id != null){
+                    byPatient.computeIfAbsent((Long) id, k -> new ArrayList<>()).add(appointment);
+                }
+            }
+            for (Map.Entry<Long, List<Appointment>> patient: byPatient.entrySet()){
+                patientRepository.findByIdForUpdate(patient.getKey()).ifPresent(p -> patient.getValue().forEach(a -> a.setPatient(p)));
+            }
+        }
+    }
+
+    private Optional<Appointment> bookWithRowLock(Appointment appointment, boolean attach){
+        String roomName = appointment.getRoom().getRoomName();
+        if (attach){
+            createRoomIfMissing(roomName);
+        }
+
+        Optional<AppointmentEvent> booked = transactionTemplate.execute(status -> {
+            Room room = roomRepository.findByRoomNameForUpdate(roomName)
+                    .orElseThrow(() -> new EntityNotFoundException("No room " + roomName));
+            lockPeople(Collections.singletonList(appointment));
+
+            // Other instances do not share an in-memory index, always ask the database.
+            // This read runs after the locks are granted, so it sees the previous holder's insert.
+            if (QueryConflictDetector.query(appointmentRepository, conflictDetector.dimensions(), appointment).isPresent()){
+                return Optional.empty();
+            }
+            appointment.setRoom(room);
+            if (attach){
+                attachPeople(appointment);
+            }
+            Appointment inserted = appointmentRepository.save(appointment);
+            return Optional.of(new AppointmentEvent(AppointmentEvent.Type.CREATED, inserted,
+                    changeLog.record(AppointmentChange.Type.CREATED, inserted.getId())));
+        });
+        if (booked.isPresent()){
+            conflictDetector.add(booked.get().getAppointment());
+            eventPublisher.publishEvent(booked.get());
+        }
+        return booked.map(AppointmentEvent::getAppointment);
+    }
+
+    // Appointments do not cascade, patients and doctors sent without an id are created here
+    private void attachPeople(Appointment appointment){
+        if (appointment.getPatient() != null && appointment.getPatient().getId() == 0){
+            appointment.setPatient(patientRepository.save(appointment.getPatient()));
+            tableVersions.bumpAfterCommit(Table.PATIENTS);
+        }
+        if (appointment.getDoctor() != null && appointment.getDoctor().getId() == 0){
+            appointment.setDoctor(doctorRepository.save(appointment.getDoctor()));
+            tableVersions.bumpAfterCommit(Table.DOCTORS);
+        }
+    }
+
+    // The first booking of a room creates its row so that there is something to lock
+    private void createRoomIfMissing(String roomName){
+        if (roomRepository.findByRoomName(roomName).isPresent()){
+            return;
+        }
+        try {
+            roomRepository.saveAndFlush(new Room(roomName));
+            tableVersions.bumpAfterCommit(Table.ROOMS);
+        } catch (DataIntegrityViolationException e){
+            // Another booking created it first
+        }
+    }
+}
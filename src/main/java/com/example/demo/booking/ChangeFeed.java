@@ -0,0 +1,69 @@
+package com.example.demo.booking;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.demo.entities.Appointment;
+import com.example.demo.entities.AppointmentChange;
+
+/**
+ * Answer of a delta sync: the changes after the client's version, at most
+ * one per appointment, and the version to ask from next time. A CLEARED
+ * entry comes first when there is one and means dropping every appointment
+ * held so far. CREATED entries carry the appointment, DELETED entries are
+ * tombstones carrying only its id.
+ */
+public class ChangeFeed {
+
+    public static class Entry {
+        private final long version;
+        private final AppointmentChange.Type type;
+        private final long appointmentId;
+        private final Appointment appointment;
+
+        public Entry(long version, AppointmentChange.Type type, long appointmentId, Appointment appointment){
+            this.version = version;
+            this.type = type;
+            this.appointmentId = appointmentId;
+            this.appointment = appointment;
+        }
+
+        public long getVersion(){
+            return this.version;
+        }
+
+        public AppointmentChange.Type getType(){
+            return this.type;
+        }
+
+        public long getAppointmentId(){
+            return this.appointmentId;
+        }
+
+        public Appointment getAppointment(){
+            return this.appointment;
+        }
+    }
+
+    private final long version;
+    private final boolean more;
+    private final List<Entry> changes = new ArrayList<>();
+
+    public ChangeFeed(long version, boolean more){
+        this.version = version;
+        this.more = more;
+    }
+
+    public long getVersion(){
+        return this.version;
+    }
+
+    // True when the page ended before the latest version, the client should ask again right away
+    public boolean isMore(){
+        return this.more;
+    }
+
+    public List<Entry> getChanges(){
+        return this.changes;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.demo.booking;
+
+import java.util.Optional;
+import java.util.Set;
+
+import com.example.demo.entities.Appointment;
+
+/**
+ * Decides whether a new appointment collides with the ones already booked in
+ * any of the checked {@link ResourceDimension}s.
+ * The implementation is picked with the {@code booking.conflict-detection}
+ * property: {@code query} (default) asks the database, {@code index} keeps an
+ * in-memory {@link AppointmentIndex}.
+ */
+public interface ConflictDetector {
+
+    Set<ResourceDimension> dimensions();
+
+    // The calendar the candidate collides in, empty when it fits
+    Optional<ResourceDimension> findConflict(Appointment candidate);
+
+    default boolean overlaps(Appointment candidate){
+        return findConflict(candidate).isPresent();
+    }
+
+    default void add(Appointment appointment){
+    }
+
+    default void remove(Appointment appointment){
+    }
+
+    default void clear(){
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.demo.booking;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.demo.entities.Appointment;
+
+/**
+ * Operations on sorted lists of disjoint free intervals.
+ */
+public final class FreeIntervals {
+
+    private FreeIntervals(){
+    }
+
+    /**
+     * Gaps between the appointments within [from, to). The appointments must
+     * be sorted by startsAt, they may overlap or reach outside the range.
+     */
+    public static List<FreeSlot> between(List<Appointment> sorted, LocalDateTime from, LocalDateTime to){
+        List<FreeSlot> free = new ArrayList<>();
+        LocalDateTime cursor = from;
+        for (Appointment appointment: sorted){
+            if (!appointment.getFinishesAt().isAfter(from) || !appointment.getStartsAt().isBefore(to)){
+                continue;
+            }
+            if (appointment.getStartsAt().isAfter(cursor)){
+                free.add(new FreeSlot(cursor, appointment.getStartsAt()));
+            }
+            if (appointment.getFinishesAt().isAfter(cursor)){
+                cursor = appointment.getFinishesAt();
+            }
+        }
+        if (cursor.isBefore(to)){
+            free.add(new FreeSlot(cursor, to));
+        }
+        return free;
+    }
+
+    // Times free in both lists, in one merge pass
+    public static List<FreeSlot> intersect(List<FreeSlot> a, List<FreeSlot> b){
+        List<FreeSlot> both = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()){
+            FreeSlot x = a.get(i);
+            FreeSlot y = b.get(j);
+            LocalDateTime start = x.getStartsAt().isAfter(y.getStartsAt()) ? x.getStartsAt() : y.getStartsAt();
+            LocalDateTime end = x.getFinishesAt().isBefore(y.getFinishesAt()) ? x.getFinishesAt() : y.getFinishesAt();
+            if (start.isBefore(end)){
+                both.add(new FreeSlot(start, end));
+            }
+            // The one ending first cannot meet anything further in the other list
+            if (x.getFinishesAt().isBefore(y.getFinishesAt())){
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return both;
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.demo.booking;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Interval tree over half-open [start, end) ranges, implemented as a treap
+ * ordered by (start, id) where every node also keeps the greatest end of its
+ * subtree. Lookups run in O(log n) and collecting k overlaps in O(log n + k).
+ *
+ * Not thread safe, callers guard it.
+ */
+public class IntervalTree {
+
+    private static final class Node {
+        final LocalDateTime start;
+        final LocalDateTime end;
+        final long id;
+        final int priority;
+        LocalDateTime maxEnd;
+        Node left;
+        Node right;
+
+        Node(LocalDateTime start, LocalDateTime end, long id, int priority){
+            this.start = start;
+            this.end = end;
+            this.id = id;
+            this.priority = priority;
+            this.maxEnd = end;
+        }
+    }
+
+    private final Random random = new Random();
+    private Node root;
+    private int size;
+
+    public int size(){
+        return this.size;
+    }
+
+    public boolean isEmpty(){
+        return this.size == 0;
+    }
+
+    // False, leaving the tree alone, when (start, id) is in it already
+    public boolean insert(LocalDateTime start, LocalDateTime end, long id){
+        if (contains(start, id)){
+            return false;
+        }
+        root = insert(root, new Node(start, end, id, random.nextInt()));
+        size++;
+        return true;
+    }
+
+    public boolean contains(LocalDateTime start, long id){
+        Node node = root;
+        while (node != null){
+            int cmp = compare(start, id, node);
+            if (cmp == 0){
+                return true;
+            }
+            node = cmp < 0 ? node.left : node.right;
+        }
+        return false;
+    }
+
+    public boolean remove(LocalDateTime start, long id){
+        int before = size;
+        root = remove(root, start, id);
+        return size < before;
+    }
+
+    public boolean overlapsAny(LocalDateTime start, LocalDateTime end){
+        Node node = root;
+        while (node != null){
+            if (node.start.isBefore(end) && start.isBefore(node.end)){
+                return true;
+            }
+            // If the left subtree reaches past start but holds no overlap, every
+            // interval in it starts at or after end, and so does the right subtree.
+            if (node.left != null && node.left.maxEnd.isAfter(start)){
+                node = node.left;
+            } else if (node.start.isBefore(end)){
+                node = node.right;
+            } else {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    public List<Long> findOverlapping(LocalDateTime start, LocalDateTime end){
+        List<Long> ids = new ArrayList<>();
+        collect(root, start, end, ids);
+        return ids;
+    }
+
+    private static void collect(Node node, LocalDateTime start, LocalDateTime end, List<Long> ids){
+        if (node == null || !node.maxEnd.isAfter(start)){
+            return;
+        }
+        collect(node.left, start, end, ids);
+        if (node.start.isBefore(end)){
+            if (node.end.isAfter(start)){
+                ids.add(node.id);
+            }
+            collect(node.right, start, end, ids);
+        }
+    }
+
+    private static int compare(LocalDateTime start, long id, Node node){
+        int cmp = start.compareTo(node.start);
+        return cmp != 0 ? cmp : Long.compare(id, node.id);
+    }
+
+    private static Node insert(Node node, Node added){
+        if (node == null){
+            return added;
+        }
+        if (compare(added.start, added.id, node) < 0){
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority){
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority){
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private Node remove(Node node, LocalDateTime start, long id){
+        if (node == null){
+            return null;
+        }
+        int cmp = compare(start, id, node);
+        if (cmp == 0){
+            size--;
+            return merge(node.left, node.right);
+        }
+        if (cmp < 0){
+            node.left = remove(node.left, start, id);
+        } else {
+            node.right = remove(node.right, start, id);
+        }
+        update(node);
+        return node;
+    }
+
+    private static Node merge(Node left, Node right){
+        if (left == null){
+            return right;
+        }
+        if (right == null){
+            return left;
+        }
+        if (left.priority > right.priority){
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static Node rotateRight(Node node){
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static Node rotateLeft(Node node){
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static void update(Node node){
+        LocalDateTime max = node.end;
+        if (node.left != null && node.left.maxEnd.isAfter(max)){
+            max = node.left.maxEnd;
+        }
+        if (node.right != null && node.right.maxEnd.isAfter(max)){
+            max = node.right.maxEnd;
+        }
+        node.maxEnd = max;
+    }
+}
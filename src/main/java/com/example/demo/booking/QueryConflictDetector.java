@@ -0,0 +1,66 @@
+package com.example.demo.booking;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.entities.Appointment;
+import com.example.demo.repositories.AppointmentRepository;
+
+/**
+ * Asks the database in one round trip for appointments sharing the room,
+ * the doctor or the patient of the candidate and intersecting its time
+ * range. Every branch is served by its (*_id, starts_at, finishes_at) index.
+ */
+@Component
+@ConditionalOnProperty(name = "booking.conflict-detection", havingValue = "query", matchIfMissing = true)
+public class QueryConflictDetector implements ConflictDetector {
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Value("${booking.conflict-dimensions:room,doctor,patient}")
+    String conflictDimensions;
+
+    private Set<ResourceDimension> dimensions;
+
+    @PostConstruct
+    void init(){
+        dimensions = ResourceDimension.parse(conflictDimensions);
+    }
+
+    @Override
+    public Set<ResourceDimension> dimensions(){
+        return this.dimensions;
+    }
+
+    @Override
+    public Optional<ResourceDimension> findConflict(Appointment candidate){
+        return query(appointmentRepository, dimensions, candidate);
+    }
+
+    public static Optional<ResourceDimension> query(AppointmentRepository appointmentRepository,
+            Set<ResourceDimension> dimensions, Appointment candidate){
+        // A dimension left out binds null, which matches no row
+        List<String> conflicts = appointmentRepository.findConflictingResources(
+                (String) key(dimensions, ResourceDimension.ROOM, candidate),
+                (Long) key(dimensions, ResourceDimension.DOCTOR, candidate),
+                (Long) key(dimensions, ResourceDimension.PATIENT, candidate),
+                candidate.getStartsAt(), candidate.getFinishesAt());
+        if (conflicts.isEmpty()){
+            return Optional.empty();
+        }
+        return Optional.of(ResourceDimension.valueOf(conflicts.get(0)));
+    }
+
+    private static Object key(Set<ResourceDimension> dimensions, ResourceDimension dimension, Appointment candidate){
+        return dimensions.contains(dimension) ? dimension.keyOf(candidate) : null;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.demo.booking;
+
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+import com.example.demo.entities.Appointment;
+
+/**
+ * A calendar an appointment occupies. Two appointments conflict when they
+ * overlap in time and share the key of any checked dimension. The checked
+ * ones are listed in {@code booking.conflict-dimensions}.
+ */
+public enum ResourceDimension {
+
+    ROOM {
+        @Override
+        public Object keyOf(Appointment appointment){
+            return appointment.getRoom() == null ? null : appointment.getRoom().getRoomName();
+        }
+    },
+    DOCTOR {
+        @Override
+        public Object keyOf(Appointment appointment){
+            // A doctor that is not stored yet cannot have other appointments
+            return appointment.getDoctor() == null || appointment.getDoctor().getId() == 0 ? null : appointment.getDoctor().getId();
+        }
+    },
+    PATIENT {
+        @Override
+        public Object keyOf(Appointment appointment){
+            return appointment.getPatient() == null || appointment.getPatient().getId() == 0 ? null : appointment.getPatient().getId();
+        }
+    };
+
+    // Null when the appointment does not occupy this calendar
+    public abstract Object keyOf(Appointment appointment);
+
+    public static Set<ResourceDimension> parse(String names){
+        Set<ResourceDimension> dimensions = EnumSet.noneOf(ResourceDimension.class);
+        for (String name: names.split(",")){
+            if (!name.trim().isEmpty()){
+                dimensions.add(valueOf(name.trim().toUpperCase(Locale.ROOT)));
+            }
+        }
+        return dimensions;
+    }
+}
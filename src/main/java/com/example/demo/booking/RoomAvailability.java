@@ -0,0 +1,237 @@
+package com.example.demo.booking;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.entities.Appointment;
+import com.example.demo.repositories.AppointmentRepository;
+
+/**
+ * Free intervals of a room, computed per day by one sweep over the sorted
+ * appointments of the days asked for. Days are cached per room until a booking or a
+ * deletion touches them, or for at most {@code availability.cache-ttl}
+ * seconds so that bookings made by other instances show up eventually.
+ */
+@Component
+public class RoomAvailability {
+
+    private static final class Key {
+        final String roomName;
+        final LocalDate day;
+
+        Key(String roomName, LocalDate day){
+            this.roomName = roomName;
+            this.day = day;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if (!(o instanceof Key)){
+                return false;
+            }
+            Key other = (Key) o;
+            return roomName.equals(other.roomName) && day.equals(other.day);
+        }
+
+        @Override
+        public int hashCode(){
+            return Objects.hash(roomName, day);
+        }
+    }
+
+    private static final class CachedDay {
+        final List<FreeSlot> slots;
+        final long expiresAt;
+
+        CachedDay(List<FreeSlot> slots, long expiresAt){
+            this.slots = slots;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Value("${availability.cache-size:10000}")
+    int cacheSize;
+
+    @Value("${availability.cache-ttl:300}")
+    long cacheTtlSeconds;
+
+    private final Map<Key, CachedDay> days = new LinkedHashMap<Key, CachedDay>(16, 0.75f, true){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, CachedDay> eldest){
+            return size() > cacheSize;
+        }
+    };
+
+    // Bumped on every invalidation, a load only lands in the cache if its room did not move meanwhile
+    private final ConcurrentMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    public List<FreeSlot> findFreeSlots(String roomName, LocalDateTime from, LocalDateTime to, Duration minDuration){
+        LocalDate first = from.toLocalDate();
+        LocalDate last = to.minusNanos(1).toLocalDate();
+
+        Map<LocalDate, List<FreeSlot>> loaded = new HashMap<>();
+        List<LocalDate> missing = new ArrayList<>();
+        for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)){
+            List<FreeSlot> cached = cached(new Key(roomName, day));
+            if (cached == null){
+                missing.add(day);
+            } else {
+                loaded.put(day, cached);
+            }
+        }
+        if (!missing.isEmpty()){
+            loaded.putAll(load(roomName, missing));
+        }
+
+        List<FreeSlot> free = new ArrayList<>();
+        LocalDateTime openStart = null;
+        LocalDateTime openEnd = null;
+        for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)){
+            for (FreeSlot slot: loaded.get(day)){
+                LocalDateTime start = slot.getStartsAt().isBefore(from) ? from : slot.getStartsAt();
+                LocalDateTime end = slot.getFinishesAt().isAfter(to) ? to : slot.getFinishesAt();
+                if (!start.isBefore(end)){
+                    continue;
+                }
+                // A slot running until midnight continues into the next day's first slot
+                if (openEnd != null && openEnd.equals(start)){
+                    openEnd = end;
+                    continue;
+                }
+                addIfLongEnough(free, openStart, openEnd, minDuration);
+                openStart = start;
+                openEnd = end;
+            }
+        }
+        addIfLongEnough(free, openStart, openEnd, minDuration);
+        return free;
+    }
+
+    public void invalidateRoom(String roomName){
+        generation(roomName).incrementAndGet();
+        synchronized (days){
+            days.keySet().removeIf(key -> key.roomName.equals(roomName));
+        }
+    }
+
+    public void invalidateAll(){
+        for (AtomicLong generation: generations.values()){
+            generation.incrementAndGet();
+        }
+        synchronized (days){
+            days.clear();
+        }
+    }
+
+    @EventListener
+    public void onAppointmentEvent(AppointmentEvent event){
+        if (event.getType() == AppointmentEvent.Type.CLEARED){
+            invalidateAll();
+            return;
+        }
+        Appointment appointment = event.getAppointment();
+        String roomName = appointment.getRoom().getRoomName();
+        generation(roomName).incrementAndGet();
+        synchronized (days){
+            LocalDate last = appointment.getFinishesAt().minusNanos(1).toLocalDate();
+            for (LocalDate day = appointment.getStartsAt().toLocalDate(); !day.isAfter(last); day = day.plusDays(1)){
+                days.remove(new Key(roomName, day));
+            }
+        }
+    }
+
+    private List<FreeSlot> cached(Key key){
+        synchronized (days){
+            CachedDay cachedDay = days.get(key);
+            if (cachedDay == null){
+                return null;
+            }
+            if (cachedDay.expiresAt < System.currentTimeMillis()){
+                days.remove(key);
+                return null;
+            }
+            return cachedDay.slots;
+        }
+    }
+
+    // One range query for all missing days, then one sweep across them
+    private Map<LocalDate, List<FreeSlot>> load(String roomName, List<LocalDate> missing){
+        long generation = generation(roomName).get();
+        LocalDateTime from = missing.get(0).atStartOfDay();
+        LocalDateTime to = missing.get(missing.size() - 1).plusDays(1).atStartOfDay();
+
+        List<Appointment> appointments = new ArrayList<>(appointmentRepository.findOverlapping(roomName, from, to));
+        appointments.sort(Comparator.comparing(Appointment::getStartsAt));
+
+        Map<LocalDate, List<FreeSlot>> loaded = sweep(appointments, missing);
+
+        synchronized (days){
+            if (generation(roomName).get() == generation){
+                long expiresAt = System.currentTimeMillis() + cacheTtlSeconds * 1000;
+                for (Map.Entry<LocalDate, List<FreeSlot>> day: loaded.entrySet()){
+                    days.put(new Key(roomName, day.getKey()), new CachedDay(day.getValue(), expiresAt));
+                }
+            }
+        }
+        return loaded;
+    }
+
+    // Gaps per day as FreeIntervals.between gives them, in a single walk over the appointments: the days
+    // ascend, so only the latest finish of the appointments already passed carries over to the next day
+    private static Map<LocalDate, List<FreeSlot>> sweep(List<Appointment> sorted, List<LocalDate> days){
+        Map<LocalDate, List<FreeSlot>> free = new HashMap<>();
+        int next = 0;
+        LocalDateTime busyUntil = LocalDateTime.MIN;
+        for (LocalDate day: days){
+            LocalDateTime dayStart = day.atStartOfDay();
+            LocalDateTime dayEnd = day.plusDays(1).atStartOfDay();
+            LocalDateTime cursor = busyUntil.isAfter(dayStart) ? busyUntil : dayStart;
+            List<FreeSlot> slots = new ArrayList<>();
+            for (; next < sorted.size() && sorted.get(next).getStartsAt().isBefore(dayEnd); next++){
+                Appointment appointment = sorted.get(next);
+                if (appointment.getStartsAt().isAfter(cursor)){
+                    slots.add(new FreeSlot(cursor, appointment.getStartsAt()));
+                }
+                if (appointment.getFinishesAt().isAfter(cursor)){
+                    cursor = appointment.getFinishesAt();
+                }
+            }
+            if (cursor.isBefore(dayEnd)){
+                slots.add(new FreeSlot(cursor, dayEnd));
+            }
+            busyUntil = cursor;
+            free.put(day, Collections.unmodifiableList(slots));
+        }
+        return free;
+    }
+
+    private static void addIfLongEnough(List<FreeSlot> free, LocalDateTime start, LocalDateTime end, Duration minDuration){
+        if (start != null && Duration.between(start, end).compareTo(minDuration) >= 0){
+            free.add(new FreeSlot(start, end));
+        }
+    }
+
+    private AtomicLong generation(String roomName){
+        return generations.computeIfAbsent(roomName, name -> new AtomicLong());
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.demo.booking;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Occupancy bitmaps of fixed length slots, one bit per slot and calendar,
+ * stored outside the Java heap. A bit is set when some appointment covers
+ * any part of its slot, so a range whose bits are all clear is certainly
+ * free, while a set bit only means "maybe taken" for ranges that do not
+ * start and end on slot boundaries.
+ *
+ * Bits live in pages of {@value #PAGE_WORDS} longs, carved out of direct
+ * buffers of {@value #CHUNK_BYTES} bytes so that a page costs no object of
+ * its own. A page is only allocated once something is booked in it, and
+ * goes back to a free list once clearing leaves it empty, so the chunks
+ * grow to the most pages ever in use at once and are not given back before
+ * {@link #clearAll()} drops the bitmap's pages. A page freed under a reader
+ * and handed to another calendar can only make that read see "maybe taken".
+ *
+ * Reads are lock free, writes are serialized on the bitmap.
+ */
+public class SlotBitmap {
+
+    static final int PAGE_WORDS = 64;
+    static final int PAGE_SLOTS = PAGE_WORDS * Long.SIZE;
+    static final int PAGE_BYTES = PAGE_WORDS * Long.BYTES;
+    static final int CHUNK_BYTES = 1 << 20;
+    static final int PAGES_PER_CHUNK = CHUNK_BYTES / PAGE_BYTES;
+
+    private static final class PageKey {
+        final Object calendar;
+        final long page;
+
+        PageKey(Object calendar, long page){
+            this.calendar = calendar;
+            this.page = page;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if (!(o instanceof PageKey)){
+                return false;
+            }
+            PageKey other = (PageKey) o;
+            return page == other.page && calendar.equals(other.calendar);
+        }
+
+        @Override
+        public int hashCode(){
+            return Objects.hash(calendar, page);
+        }
+    }
+
+    private final long slotSeconds;
+
+    private final ConcurrentMap<PageKey, Integer> pages = new ConcurrentHashMap<>();
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+
+    private volatile ByteBuffer[] chunkArray = new ByteBuffer[0];
+
+    private int allocatedPages;
+
+    // Pages cleared down to zero, reused before new ones are carved out
+    private final Deque<Integer> freePages = new ArrayDeque<>();
+
+    public SlotBitmap(int slotMinutes){
+        if (slotMinutes <= 0){
+            throw new IllegalArgumentException("slotMinutes must be positive");
+        }
+        this.slotSeconds = slotMinutes * 60L;
+    }
+
+    // True when some slot touched by [start, end) is taken
+    public boolean anySet(Object calendar, LocalDateTime start, LocalDateTime end){
+        long first = slotOf(start);
+        long last = slotOf(end.minusNanos(1));
+        for (long page = first / PAGE_SLOTS; page <= last / PAGE_SLOTS; page++){
+            Integer id = pages.get(new PageKey(calendar, page));
+            if (id == null){
+                continue;
+            }
+            ByteBuffer chunk = chunkArray[id / PAGES_PER_CHUNK];
+            int base = (id % PAGES_PER_CHUNK) * PAGE_BYTES;
+            long from = Math.max(first, page * PAGE_SLOTS) - page * PAGE_SLOTS;
+            long to = Math.min(last, page * PAGE_SLOTS + PAGE_SLOTS - 1) - page * PAGE_SLOTS;
+            for (int word = (int) (from >>> 6); word <= (int) (to >>> 6); word++){
+                if ((chunk.getLong(base + word * Long.BYTES) & mask(word, from, to)) != 0){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Marks every slot touched by [start, end).
+     *
+     * @return true if any of those slots was already set, i.e. the calendar
+     *         may hold overlapping appointments whose bits must not be
+     *         cleared again
+     */
+    public synchronized boolean mark(Object calendar, LocalDateTime start, LocalDateTime end){
+        long first = slotOf(start);
+        long last = slotOf(end.minusNanos(1));
+        boolean shared = anySet(calendar, start, end);
+        update(calendar, first, last, true);
+        return shared;
+    }
+
+    /**
+     * Clears the slots lying wholly inside [start, end). Slots only partly
+     * covered may be shared with a neighbour and stay set.
+     */
+    public synchronized void clear(Object calendar, LocalDateTime start, LocalDateTime end){
+        long first = interiorFirst(start);
+        long last = interiorLast(end);
+        if (first <= last){
+            update(calendar, first, last, false);
+        }
+    }
+
+    public synchronized void clearAll(){
+        pages.clear();
+        freePages.clear();
+        for (ByteBuffer chunk: chunks){
+            for (int i = 0; i < CHUNK_BYTES; i += Long.BYTES){
+                chunk.putLong(i, 0L);
+            }
+        }
+        allocatedPages = 0;
+    }
+
+    public synchronized long offHeapBytes(){
+        return (long) chunks.size() * CHUNK_BYTES;
+    }
+
+    private void update(Object calendar, long first, long last, boolean set){
+        for (long page = first / PAGE_SLOTS; page <= last / PAGE_SLOTS; page++){
+            PageKey key = new PageKey(calendar, page);
+            Integer id = set ? pages.computeIfAbsent(key, k -> allocatePage()) : pages.get(key);
+            if (id == null){
+                continue;
+            }
+            ByteBuffer chunk = chunkArray[id / PAGES_PER_CHUNK];
+            int base = (id % PAGES_PER_CHUNK) * PAGE_BYTES;
+            long from = Math.max(first, page * PAGE_SLOTS) - page * PAGE_SLOTS;
+            long to = Math.min(last, page * PAGE_SLOTS + PAGE_SLOTS - 1) - page * PAGE_SLOTS;
+            for (int word = (int) (from >>> 6); word <= (int) (to >>> 6); word++){
+                int offset = base + word * Long.BYTES;
+                long bits = chunk.getLong(offset);
+                long mask = mask(word, from, to);
+                chunk.putLong(offset, set ? bits | mask : bits & ~mask);
+            }
+            if (!set && isEmpty(chunk, base)){
+                pages.remove(key);
+                freePages.push(id);
+            }
+        }
+    }
+
+    private static boolean isEmpty(ByteBuffer chunk, int base){
+        for (int word = 0; word < PAGE_WORDS; word++){
+            if (chunk.getLong(base + word * Long.BYTES) != 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized int allocatePage(){
+        if (!freePages.isEmpty()){
+            return freePages.pop();
+        }
+        int id = allocatedPages++;
+        if (id / PAGES_PER_CHUNK == chunks.size()){
+            chunks.add(ByteBuffer.allocateDirect(CHUNK_BYTES));
+            chunkArray = chunks.toArray(new ByteBuffer[0]);
+        }
+        return id;
+    }
+
+    // Bits of the given word that fall within slots [from, to] of the page
+    private static long mask(int word, long from, long to){
+        int low = word == (int) (from >>> 6) ? (int) (from & 63) : 0;
+        int high = word == (int) (to >>> 6) ? (int) (to & 63) : 63;
+        long upTo = high == 63 ? -1L : (1L << (high + 1)) - 1;
+        return upTo & (-1L << low);
+    }
+
+    private long slotOf(LocalDateTime time){
+        return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), slotSeconds);
+    }
+
+    private long interiorFirst(LocalDateTime start){
+        long seconds = start.toEpochSecond(ZoneOffset.UTC);
+        long slot = Math.floorDiv(seconds, slotSeconds);
+        return slot * slotSeconds == seconds && start.getNano() == 0 ? slot : slot + 1;
+    }
+
+    private long interiorLast(LocalDateTime end){
+        return Math.floorDiv(end.toEpochSecond(ZoneOffset.UTC), slotSeconds) - 1;
+    }
+}
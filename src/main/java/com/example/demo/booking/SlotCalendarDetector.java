@@ -0,0 +1,135 @@
+package com.example.demo.booking;
+
+import java.util.EnumSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.entities.Appointment;
+import com.example.demo.repositories.AppointmentRepository;
+
+/**
+ * Keeps a {@link SlotBitmap} per room, doctor and patient and only asks the
+ * database about the calendars whose bits say "maybe taken". Bookings that
+ * start and end on slot boundaries next to free slots never reach the
+ * database.
+ *
+ * Loaded from the repository on first use, single node only like the
+ * in-memory index.
+ */
+@Component
+@ConditionalOnProperty(name = "booking.conflict-detection", havingValue = "bitmap")
+public class SlotCalendarDetector implements ConflictDetector {
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Value("${booking.conflict-dimensions:room,doctor,patient}")
+    String conflictDimensions;
+
+    @Value("${booking.slot-minutes:5}")
+    int slotMinutes;
+
+    private Set<ResourceDimension> dimensions;
+
+    private SlotBitmap bitmap;
+
+    // Calendars where an appointment touched an already set slot, whose bits are never cleared
+    // again. Unaligned neighbours sharing a slot, or slots left behind by unaligned
+    // cancellations, land a calendar here too.
+    private final Set<String> shared = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean loaded;
+
+    @PostConstruct
+    void init(){
+        dimensions = ResourceDimension.parse(conflictDimensions);
+        bitmap = new SlotBitmap(slotMinutes);
+    }
+
+    @Override
+    public Set<ResourceDimension> dimensions(){
+        return this.dimensions;
+    }
+
+    @Override
+    public Optional<ResourceDimension> findConflict(Appointment candidate){
+        ensureLoaded();
+        Set<ResourceDimension> maybe = EnumSet.noneOf(ResourceDimension.class);
+        for (ResourceDimension dimension: dimensions){
+            String calendar = calendarOf(dimension, candidate);
+            if (calendar != null && bitmap.anySet(calendar, candidate.getStartsAt(), candidate.getFinishesAt())){
+                maybe.add(dimension);
+            }
+        }
+        if (maybe.isEmpty()){
+            return Optional.empty();
+        }
+        return QueryConflictDetector.query(appointmentRepository, maybe, candidate);
+    }
+
+    @Override
+    public void add(Appointment appointment){
+        ensureLoaded();
+        mark(appointment);
+    }
+
+    @Override
+    public void remove(Appointment appointment){
+        ensureLoaded();
+        for (ResourceDimension dimension: dimensions){
+            String calendar = calendarOf(dimension, appointment);
+            if (calendar != null && !shared.contains(calendar)){
+                bitmap.clear(calendar, appointment.getStartsAt(), appointment.getFinishesAt());
+            }
+        }
+    }
+
+    @Override
+    public void clear(){
+        synchronized (this){
+            bitmap.clearAll();
+            shared.clear();
+            loaded = true;
+        }
+    }
+
+    public long offHeapBytes(){
+        return bitmap.offHeapBytes();
+    }
+
+    private void mark(Appointment appointment){
+        for (ResourceDimension dimension: dimensions){
+            String calendar = calendarOf(dimension, appointment);
+            if (calendar != null && bitmap.mark(calendar, appointment.getStartsAt(), appointment.getFinishesAt())){
+                shared.add(calendar);
+            }
+        }
+    }
+
+    private static String calendarOf(ResourceDimension dimension, Appointment appointment){
+        Object key = dimension.keyOf(appointment);
+        return key == null ? null : dimension + ":" + key;
+    }
+
+    private void ensureLoaded(){
+        if (loaded){
+            return;
+        }
+        synchronized (this){
+            if (!loaded){
+                for (Appointment a: appointmentRepository.findAll()){
+                    mark(a);
+                }
+                loaded = true;
+            }
+        }
+    }
+}
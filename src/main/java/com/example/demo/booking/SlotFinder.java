@@ -0,0 +1,114 @@
+package com.example.demo.booking;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.entities.Room;
+import com.example.demo.repositories.AppointmentRepository;
+import com.example.demo.repositories.RoomRepository;
+
+/**
+ * Finds the earliest slots where a doctor, a patient and a room are all free.
+ * The free intervals of the doctor and the patient are intersected once,
+ * then with the (cached) free intervals of each room, and the earliest fits
+ * are picked across rooms in a single merge. Only the checked
+ * {@link ResourceDimension}s constrain the search.
+ */
+@Component
+public class SlotFinder {
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    RoomAvailability roomAvailability;
+
+    @Autowired
+    ConflictDetector conflictDetector;
+
+    // Empty when there is no room to book in
+    public List<Suggestion> suggest(SuggestionRequest request){
+        List<String> rooms = new ArrayList<>(roomNames(request));
+        if (rooms.isEmpty()){
+            return Collections.emptyList();
+        }
+        LocalDateTime from = request.getFrom();
+        LocalDateTime to = request.getTo();
+        Duration duration = Duration.ofMinutes(request.getDuration());
+        Set<ResourceDimension> dimensions = conflictDetector.dimensions();
+
+        List<FreeSlot> people = Collections.singletonList(new FreeSlot(from, to));
+        if (dimensions.contains(ResourceDimension.DOCTOR)){
+            people = FreeIntervals.intersect(people, FreeIntervals.between(
+                    appointmentRepository.findOverlappingForDoctor(request.getDoctorId(), from, to), from, to));
+        }
+        if (dimensions.contains(ResourceDimension.PATIENT)){
+            people = FreeIntervals.intersect(people, FreeIntervals.between(
+                    appointmentRepository.findOverlappingForPatient(request.getPatientId(), from, to), from, to));
+        }
+
+        List<List<FreeSlot>> free = new ArrayList<>(rooms.size());
+        for (String room: rooms){
+            free.add(!dimensions.contains(ResourceDimension.ROOM) || people.isEmpty()
+                    ? people
+                    : FreeIntervals.intersect(people, roomAvailability.findFreeSlots(room, from, to, duration)));
+        }
+        return earliest(rooms, free, from, duration, request.getLimit());
+    }
+
+    // Back to back slots, each in the first room (by name) where it starts earliest
+    private static List<Suggestion> earliest(List<String> rooms, List<List<FreeSlot>> free, LocalDateTime from,
+            Duration duration, int limit){
+        List<Suggestion> suggestions = new ArrayList<>();
+        int[] next = new int[rooms.size()];
+        LocalDateTime cursor = from;
+        while (suggestions.size() < limit){
+            int bestRoom = -1;
+            LocalDateTime bestStart = null;
+            for (int r = 0; r < rooms.size(); r++){
+                List<FreeSlot> slots = free.get(r);
+                while (next[r] < slots.size()){
+                    FreeSlot slot = slots.get(next[r]);
+                    LocalDateTime start = slot.getStartsAt().isAfter(cursor) ? slot.getStartsAt() : cursor;
+                    if (!start.plus(duration).isAfter(slot.getFinishesAt())){
+                        if (bestStart == null || start.isBefore(bestStart)){
+                            bestRoom = r;
+                            bestStart = start;
+                        }
+                        break;
+                    }
+                    next[r]++;
+                }
+            }
+            if (bestRoom < 0){
+                break;
+            }
+            cursor = bestStart.plus(duration);
+            suggestions.add(new Suggestion(bestStart, cursor, rooms.get(bestRoom)));
+        }
+        return suggestions;
+    }
+
+    private Set<String> roomNames(SuggestionRequest request){
+        Set<String> names = new TreeSet<>();
+        if (request.getRooms() != null && !request.getRooms().isEmpty()){
+            names.addAll(request.getRooms());
+        } else {
+            for (Room room: roomRepository.findAll()){
+                names.add(room.getRoomName());
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.demo.booking;
+
+import java.util.Collection;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed set of locks shared out by key hash. Keys on different stripes never
+ * contend, keys on the same stripe are serialized.
+ */
+public class StripedLocks {
+
+    private final Lock[] stripes;
+
+    public StripedLocks(int stripes){
+        int size = 1;
+        while (size < stripes){
+            size <<= 1;
+        }
+        this.stripes = new Lock[size];
+        for (int i = 0; i < size; i++){
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public int size(){
+        return this.stripes.length;
+    }
+
+    public Lock get(Object key){
+        return stripes[indexOf(key)];
+    }
+
+    public int indexOf(Object key){
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return h & (stripes.length - 1);
+    }
+
+    // Takes the stripes of all keys in ascending order, so that two callers never wait on each other
+    public int[] lock(Collection<?> keys){
+        TreeSet<Integer> sorted = new TreeSet<>();
+        for (Object key: keys){
+            sorted.add(indexOf(key));
+        }
+        int[] indexes = new int[sorted.size()];
+        int i = 0;
+        for (Integer index: sorted){
+            stripes[index].lock();
+            indexes[i++] = index;
+        }
+        return indexes;
+    }
+
+    public void unlock(int[] indexes){
+        for (int i = indexes.length - 1; i >= 0; i--){
+            stripes[indexes[i]].unlock();
+        }
+    }
+
+    public void lockAll(){
+        for (Lock lock: stripes){
+            lock.lock();
+        }
+    }
+
+    public void unlockAll(){
+        for (int i = stripes.length - 1; i >= 0; i--){
+            stripes[i].unlock();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.demo.booking;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+public class Suggestion {
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private final LocalDateTime startsAt;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private final LocalDateTime finishesAt;
+
+    private final String roomName;
+
+    public Suggestion(LocalDateTime startsAt, LocalDateTime finishesAt, String roomName){
+        this.startsAt = startsAt;
+        this.finishesAt = finishesAt;
+        this.roomName = roomName;
+    }
+
+    public LocalDateTime getStartsAt(){
+        return this.startsAt;
+    }
+
+    public LocalDateTime getFinishesAt(){
+        return this.finishesAt;
+    }
+
+    public String getRoomName(){
+        return this.roomName;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.demo.booking;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * What POST /api/appointments/suggest looks for: {@code limit} slots of
+ * {@code duration} minutes within [from, to) where the doctor, the patient
+ * and one of the rooms are free. Without rooms every known room is tried,
+ * and there is nothing to suggest when no room is known.
+ */
+public class SuggestionRequest {
+
+    private Long doctorId;
+
+    private Long patientId;
+
+    private List<String> rooms;
+
+    private int duration;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime from;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime to;
+
+    private int limit = 5;
+
+    public Long getDoctorId(){
+        return this.doctorId;
+    }
+
+    public void setDoctorId(Long doctorId){
+        this.doctorId = doctorId;
+    }
+
+    public Long getPatientId(){
+        return this.patientId;
+    }
+
+    public void setPatientId(Long patientId){
+        this.patientId = patientId;
+    }
+
+    public List<String> getRooms(){
+        return this.rooms;
+    }
+
+    public void setRooms(List<String> rooms){
+        this.rooms = rooms;
+    }
+
+    public int getDuration(){
+        return this.duration;
+    }
+
+    public void setDuration(int duration){
+        this.duration = duration;
+    }
+
+    public LocalDateTime getFrom(){
+        return this.from;
+    }
+
+    public void setFrom(LocalDateTime from){
+        this.from = from;
+    }
+
+    public LocalDateTime getTo(){
+        return this.to;
+    }
+
+    public void setTo(LocalDateTime to){
+        this.to = to;
+    }
+
+    public int getLimit(){
+        return this.limit;
+    }
+
+    public void setLimit(int limit){
+        this.limit = limit;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.demo.booking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import com.example.demo.entities.Appointment;
+
+/**
+ * Sweep over the appointments of one room in start order, used to check a
+ * whole batch of new bookings in a single pass.
+ */
+public final class SweepLine {
+
+    private SweepLine(){
+    }
+
+    /**
+     * Both lists must belong to the same room and be sorted by startsAt.
+     * Candidates are accepted in order, each one is checked against the
+     * existing appointments and the candidates accepted before it.
+     *
+     * @return one entry per candidate, null when it fits, otherwise the
+     *         existing appointment or earlier candidate it collides with
+     */
+    public static List<Appointment> firstConflicts(List<Appointment> existing, List<Appointment> candidates){
+        return firstConflicts(existing, candidates, candidate -> true);
+    }
+
+    /**
+     * Same as {@link #firstConflicts(List, List)}, but a candidate that fits
+     * the room is only accepted if {@code admit} agrees. A refused candidate
+     * does not block later ones and its entry is the candidate itself.
+     */
+    public static List<Appointment> firstConflicts(List<Appointment> existing, List<Appointment> candidates, Predicate<Appointment> admit){
+        List<Appointment> conflicts = new ArrayList<>(candidates.size());
+        int next = 0;
+        // Latest finishing interval among everything starting at or before the current candidate
+        Appointment frontier = null;
+
+        for (Appointment candidate: candidates){
+            while (next < existing.size() && !existing.get(next).getStartsAt().isAfter(candidate.getStartsAt())){
+                frontier = later(frontier, existing.get(next));
+                next++;
+            }
+            if (frontier != null && frontier.getFinishesAt().isAfter(candidate.getStartsAt())){
+                conflicts.add(frontier);
+            } else if (next < existing.size() && existing.get(next).getStartsAt().isBefore(candidate.getFinishesAt())){
+                conflicts.add(existing.get(next));
+            } else if (admit.test(candidate)){
+                conflicts.add(null);
+                frontier = later(frontier, candidate);
+            } else {
+                conflicts.add(candidate);
+            }
+        }
+        return conflicts;
+    }
+
+    private static Appointment later(Appointment current, Appointment other){
+        if (current == null || other.getFinishesAt().isAfter(current.getFinishesAt())){
+            return other;
+        }
+        return current;
+    }
+}
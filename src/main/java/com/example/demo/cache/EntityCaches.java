@@ -0,0 +1,89 @@
+package com.example.demo.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.entities.Room;
+
+/**
+ * Entry point to the Hibernate second-level cache of rooms, doctors and
+ * patients. Hibernate keeps the regions in step with its own writes; the
+ * controllers also invalidate here on create and delete so nothing written
+ * behind its back outlives the request that touched the row. All calls are
+ * no-ops while the cache is switched off.
+ */
+@Component
+public class EntityCaches {
+
+    public static final String[] REGIONS = {"rooms", "doctors", "patients"};
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    public boolean isEnabled(){
+        return sessionFactory().getSessionFactoryOptions().isSecondLevelCacheEnabled();
+    }
+
+    public void invalidate(Class<?> entity, Object id){
+        if (isEnabled()){
+            entityManagerFactory.getCache().evict(entity, id);
+            evictQueries(entity);
+        }
+    }
+
+    public void invalidateAll(Class<?> entity){
+        if (isEnabled()){
+            entityManagerFactory.getCache().evict(entity);
+            evictQueries(entity);
+        }
+    }
+
+    // Hits, misses, puts and size per entity region and for the query cache
+    public Map<String, Object> statistics(){
+        Statistics statistics = sessionFactory().getStatistics();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", isEnabled());
+        result.put("statisticsEnabled", statistics.isStatisticsEnabled());
+        if (!isEnabled()){
+            return result;
+        }
+        for (String region: REGIONS){
+            CacheRegionStatistics regionStatistics = statistics.getDomainDataRegionStatistics(region);
+            result.put(region, counters(regionStatistics.getHitCount(), regionStatistics.getMissCount(),
+                    regionStatistics.getPutCount(), regionStatistics.getElementCountInMemory()));
+        }
+        result.put("queries", counters(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(),
+                statistics.getQueryCachePutCount(), -1));
+        return result;
+    }
+
+    private static Map<String, Long> counters(long hits, long misses, long puts, long size){
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("hits", hits);
+        counters.put("misses", misses);
+        counters.put("puts", puts);
+        if (size >= 0){
+            counters.put("size", size);
+        }
+        return counters;
+    }
+
+    // RoomRepository.findByRoomName is the only cached query
+    private void evictQueries(Class<?> entity){
+        if (entity == Room.class){
+            sessionFactory().getCache().evictDefaultQueryRegion();
+        }
+    }
+
+    private SessionFactory sessionFactory(){
+        return entityManagerFactory.unwrap(SessionFactory.class);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.demo.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.booking.AppointmentEvent;
+import com.example.demo.entities.Appointment;
+import com.example.demo.entities.Doctor;
+import com.example.demo.entities.Patient;
+import com.example.demo.entities.Room;
+
+/**
+ * Read-through caches behind the get-by-id endpoints, one {@link LongKeyCache}
+ * per entity, loading through the repository call the controller passes in.
+ * Controllers invalidate on delete; appointments are invalidated from the
+ * {@link AppointmentEvent}s of the booking coordinator instead, which covers
+ * every way an appointment goes away. Entries are per instance and live for
+ * at most {@code entity-cache.ttl} seconds.
+ */
+@Component
+public class EntityReadCache {
+
+    @Value("${entity-cache.size:10000}")
+    int cacheSize;
+
+    @Value("${entity-cache.ttl:60}")
+    long cacheTtlSeconds;
+
+    private LongKeyCache<Appointment> appointments;
+    private LongKeyCache<Patient> patients;
+    private LongKeyCache<Doctor> doctors;
+    private LongKeyCache<Room> rooms;
+
+    @PostConstruct
+    void init(){
+        Duration ttl = Duration.ofSeconds(cacheTtlSeconds);
+        appointments = new LongKeyCache<>(cacheSize, ttl);
+        patients = new LongKeyCache<>(cacheSize, ttl);
+        doctors = new LongKeyCache<>(cacheSize, ttl);
+        rooms = new LongKeyCache<>(cacheSize, ttl);
+    }
+
+    public Optional<Appointment> appointment(long id, LongFunction<Optional<Appointment>> loader){
+        return Optional.ofNullable(appointments.get(id, key -> loader.apply(key).orElse(null)));
+    }
+
+    public Optional<Patient> patient(long id, LongFunction<Optional<Patient>> loader){
+        return Optional.ofNullable(patients.get(id, key -> loader.apply(key).orElse(null)));
+    }
+
+    public Optional<Doctor> doctor(long id, LongFunction<Optional<Doctor>> loader){
+        return Optional.ofNullable(doctors.get(id, key -> loader.apply(key).orElse(null)));
+    }
+
+    // Rooms are keyed by a hash of the name, a hit for another name is read around the cache
+    public Optional<Room> room(String roomName, Function<String, Optional<Room>> loader){
+        Room room = rooms.get(LongKeyCache.keyOf(roomName), key -> loader.apply(roomName).orElse(null));
+        if (room == null || room.getRoomName().equals(roomName)){
+            return Optional.ofNullable(room);
+        }
+        return loader.apply(roomName);
+    }
+
+    public void invalidatePatient(long id){
+        patients.invalidate(id);
+    }
+
+    public void invalidateAllPatients(){
+        patients.invalidateAll();
+    }
+
+    public void invalidateDoctor(long id){
+        doctors.invalidate(id);
+    }
+
+    public void invalidateAllDoctors(){
+        doctors.invalidateAll();
+    }
+
+    public void invalidateRoom(String roomName){
+        rooms.invalidate(LongKeyCache.keyOf(roomName));
+    }
+
+    public void invalidateAllRooms(){
+        rooms.invalidateAll();
+    }
+
+    @EventListener
+    public void onAppointmentEvent(AppointmentEvent event){
+        if (event.getType() == AppointmentEvent.Type.CLEARED){
+            appointments.invalidateAll();
+        } else if (event.getType() == AppointmentEvent.Type.DELETED){
+            appointments.invalidate(event.getAppointment().getId());
+        }
+    }
+
+    // Hits, misses, coalesced misses and size per cache
+    public Map<String, Object> statistics(){
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("appointments", counters(appointments));
+        result.put("patients", counters(patients));
+        result.put("doctors", counters(doctors));
+        result.put("rooms", counters(rooms));
+        return result;
+    }
+
+    private static Map<String, Long> counters(LongKeyCache<?> cache){
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("hits", cache.hits());
+        counters.put("misses", cache.misses());
+        counters.put("coalesced", cache.coalesced());
+        counters.put("size", (long) cache.size());
+        return counters;
+    }
+}
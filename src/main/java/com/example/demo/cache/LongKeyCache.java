@@ -0,0 +1,299 @@
+package com.example.demo.cache;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * Read-through cache keyed by primitive longs, so lookups allocate neither
+ * boxed keys nor map entries. It is split into segments, each a linear
+ * probing table guarded by its own monitor. Entries expire {@code ttl} after
+ * they were loaded; a full segment evicts with the CLOCK algorithm, which
+ * spares entries read since the hand last passed them.
+ *
+ * Concurrent misses on one key are coalesced: the first caller loads while
+ * the others wait for its result. Null results are handed to every waiter
+ * but not cached. A key invalidated during its load is not cached either.
+ */
+public class LongKeyCache<V> {
+
+    private static final int SEGMENTS = 16;
+
+    // Placeholder of a key whose value is being loaded
+    private static final class Flight extends CompletableFuture<Object> {
+    }
+
+    private static final class Segment {
+        final int capacity;
+        final int mask;
+        final long[] keys;
+        final Object[] values;
+        final long[] expiresAt;
+        final boolean[] referenced;
+        int size;
+        int hand;
+
+        Segment(int capacity){
+            // Sized for half full tables at capacity, short probe runs
+            int slots = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) * 2;
+            this.capacity = capacity;
+            this.mask = slots - 1;
+            this.keys = new long[slots];
+            this.values = new Object[slots];
+            this.expiresAt = new long[slots];
+            this.referenced = new boolean[slots];
+        }
+
+        int find(long key, int home){
+            for (int i = home; values[i] != null; i = (i + 1) & mask){
+                if (keys[i] == key){
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        // Inserts a key known to be absent, false if the table only holds loads in flight
+        boolean insert(long key, int home, Object value, long expiry, long now){
+            if (size >= capacity && !evictOne(now) && size >= mask){
+                return false;
+            }
+            int i = home;
+            while (values[i] != null){
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            expiresAt[i] = expiry;
+            referenced[i] = false;
+            size++;
+            return true;
+        }
+
+        // Backward shift deletion, later entries of the probe run move up instead of leaving tombstones
+        void delete(int i){
+            int j = i;
+            while (true){
+                j = (j + 1) & mask;
+                if (values[j] == null){
+                    break;
+                }
+                int home = slot(hash(keys[j]), mask);
+                boolean stays = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+                if (stays){
+                    continue;
+                }
+                keys[i] = keys[j];
+                values[i] = values[j];
+                expiresAt[i] = expiresAt[j];
+                referenced[i] = referenced[j];
+                i = j;
+            }
+            values[i] = null;
+            referenced[i] = false;
+            size--;
+        }
+
+        // Two turns of the hand find a victim unless every entry is a load in flight
+        boolean evictOne(long now){
+            for (int step = 0; step < 2 * (mask + 1); step++){
+                int i = hand;
+                Object value = values[i];
+                if (value == null || value instanceof Flight){
+                    hand = (hand + 1) & mask;
+                    continue;
+                }
+                if (referenced[i] && expiresAt[i] - now > 0){
+                    referenced[i] = false;
+                    hand = (hand + 1) & mask;
+                    continue;
+                }
+                // The hand stays, delete may shift the next entry into this slot
+                delete(i);
+                return true;
+            }
+            return false;
+        }
+
+        void clear(){
+            Arrays.fill(values, null);
+            Arrays.fill(referenced, false);
+            size = 0;
+        }
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final boolean enabled;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public LongKeyCache(int maxSize, Duration ttl){
+        this(maxSize, ttl, System::nanoTime);
+    }
+
+    // A maxSize or ttl of zero turns the cache off, every get loads
+    public LongKeyCache(int maxSize, Duration ttl, LongSupplier nanoClock){
+        this.enabled = maxSize > 0 && !ttl.isZero() && !ttl.isNegative();
+        this.ttlNanos = ttl.toNanos();
+        this.clock = nanoClock;
+        int perSegment = Math.max(1, (maxSize + SEGMENTS - 1) / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++){
+            segments[i] = new Segment(enabled ? perSegment : 1);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key, LongFunction<V> loader){
+        if (!enabled){
+            return loader.apply(key);
+        }
+        long h = hash(key);
+        Segment segment = segments[(int) (h >>> 32) & (SEGMENTS - 1)];
+        int home = slot(h, segment.mask);
+
+        Flight flight = null;
+        boolean loading = false;
+        synchronized (segment){
+            int i = segment.find(key, home);
+            if (i >= 0 && segment.values[i] instanceof Flight){
+                flight = (Flight) segment.values[i];
+            } else {
+                long now = clock.getAsLong();
+                if (i >= 0){
+                    if (segment.expiresAt[i] - now > 0){
+                        segment.referenced[i] = true;
+                        hits.increment();
+                        return (V) segment.values[i];
+                    }
+                    segment.delete(i);
+                }
+                misses.increment();
+                flight = new Flight();
+                loading = segment.insert(key, home, flight, Long.MAX_VALUE, now);
+                if (!loading){
+                    flight = null;
+                }
+            }
+        }
+        if (flight == null){
+            return loader.apply(key);
+        }
+        if (!loading){
+            coalesced.increment();
+            return (V) await(flight);
+        }
+
+        V value;
+        try {
+            value = loader.apply(key);
+        } catch (RuntimeException | Error e){
+            synchronized (segment){
+                int i = segment.find(key, home);
+                if (i >= 0 && segment.values[i] == flight){
+                    segment.delete(i);
+                }
+            }
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        synchronized (segment){
+            int i = segment.find(key, home);
+            if (i >= 0 && segment.values[i] == flight){
+                if (value == null){
+                    segment.delete(i);
+                } else {
+                    segment.values[i] = value;
+                    segment.expiresAt[i] = clock.getAsLong() + ttlNanos;
+                }
+            }
+        }
+        flight.complete(value);
+        return value;
+    }
+
+    public void invalidate(long key){
+        if (!enabled){
+            return;
+        }
+        long h = hash(key);
+        Segment segment = segments[(int) (h >>> 32) & (SEGMENTS - 1)];
+        synchronized (segment){
+            int i = segment.find(key, slot(h, segment.mask));
+            if (i >= 0){
+                segment.delete(i);
+            }
+        }
+    }
+
+    public void invalidateAll(){
+        for (Segment segment: segments){
+            synchronized (segment){
+                segment.clear();
+            }
+        }
+    }
+
+    public int size(){
+        int size = 0;
+        for (Segment segment: segments){
+            synchronized (segment){
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    public long hits(){
+        return hits.sum();
+    }
+
+    public long misses(){
+        return misses.sum();
+    }
+
+    // Misses that waited for a load already running instead of starting their own
+    public long coalesced(){
+        return coalesced.sum();
+    }
+
+    // 64-bit FNV-1a over the characters, for callers keyed by strings
+    public static long keyOf(CharSequence text){
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++){
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static Object await(Flight flight){
+        try {
+            return flight.join();
+        } catch (CompletionException e){
+            if (e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error){
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static long hash(long key){
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    private static int slot(long hash, int mask){
+        return (int) hash & mask;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.demo.cache;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.WebRequest;
+
+import com.example.demo.booking.AppointmentEvent;
+
+/**
+ * Monotonic version of each table, bumped once a write to it has committed.
+ * The list endpoints derive their ETag from it, so a poll of an unchanged
+ * collection is answered with 304 before anything is queried. Versions live
+ * in this instance only, with several instances writing switch ETags off.
+ */
+@Component
+public class TableVersions {
+
+    public enum Table { APPOINTMENTS, PATIENTS, DOCTORS, ROOMS }
+
+    @Value("${etag.enabled:true}")
+    boolean enabled;
+
+    // Counters restart with the application, tags handed out by an earlier run must not match
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+    private final AtomicLongArray versions = new AtomicLongArray(Table.values().length);
+
+    public long version(Table table){
+        return versions.get(table.ordinal());
+    }
+
+    public void bump(Table table){
+        versions.incrementAndGet(table.ordinal());
+    }
+
+    // Inside a transaction the bump waits for the commit, a read in between would tag old rows with the new version
+    public void bumpAfterCommit(Table table){
+        if (!TransactionSynchronizationManager.isSynchronizationActive()){
+            bump(table);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization(){
+            @Override
+            public void afterCommit(){
+                bump(table);
+            }
+        });
+    }
+
+    // Null when ETags are off. The query parameters are part of the tag, every page and filter has its own
+    public String etag(Table table, WebRequest request){
+        if (!enabled){
+            return null;
+        }
+        StringBuilder query = new StringBuilder();
+        for (Map.Entry<String, String[]> parameter: new TreeMap<>(request.getParameterMap()).entrySet()){
+            query.append(parameter.getKey());
+            for (String value: parameter.getValue()){
+                query.append('=').append(value);
+            }
+            query.append('&');
+        }
+        return "\"" + epoch + "-" + version(table) + "-" + Long.toHexString(LongKeyCache.keyOf(query)) + "\"";
+    }
+
+    @EventListener
+    public void onAppointmentEvent(AppointmentEvent event){
+        bump(Table.APPOINTMENTS);
+    }
+}
@@ -1,22 +1,41 @@
 package com.example.demo.controllers;
 
 import com.example.demo.repositories.*;
+import com.example.demo.booking.AppointmentChangeLog;
+import com.example.demo.booking.AppointmentReference;
+import com.example.demo.booking.BatchResult;
+import com.example.demo.booking.BookingCoordinator;
+import com.example.demo.booking.ChangeFeed;
+import com.example.demo.booking.SlotFinder;
+import com.example.demo.booking.Suggestion;
+import com.example.demo.booking.SuggestionRequest;
+import com.example.demo.cache.EntityReadCache;
+import com.example.demo.cache.TableVersions;
+import com.example.demo.cache.TableVersions.Table;
 import com.example.demo.entities.*;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+import javax.persistence.EntityNotFoundException;
+
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
 @RestController
@@ -26,22 +45,121 @@ public class AppointmentController {
     @Autowired
     AppointmentRepository appointmentRepository;
 
+    @Autowired
+    JsonStreams jsonStreams;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    BookingCoordinator bookingCoordinator;
+
+    @Autowired
+    SlotFinder slotFinder;
+
+    @Autowired
+    AppointmentChangeLog changeLog;
+
+    @Autowired
+    AppointmentEventHub eventHub;
+
+    @Autowired
+    EntityReadCache entityReadCache;
+
+    @Autowired
+    TableVersions tableVersions;
+
+    @Value("${booking.suggest-max-limit:50}")
+    int suggestMaxLimit;
+
+    @Value("${booking.suggest-max-days:31}")
+    int suggestMaxDays;
+
+    // Optionally filtered by doctorId, patientId, room and the [from, to) window the appointments intersect,
+    // and shaped by fields and expand (see AppointmentView)
     @GetMapping("/appointments")
-    public ResponseEntity<List<Appointment>> getAllAppointments(){
-        List<Appointment> appointments = new ArrayList<>();
+    public ResponseEntity<?> getAllAppointments(AppointmentFilter filter,
+            @RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", defaultValue = Keyset.DEFAULT_LIMIT) int limit,
+            @RequestParam(value = "unpaged", defaultValue = "false") boolean unpaged,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "expand", required = false) String expand, WebRequest request){
+        AppointmentView view = AppointmentView.parse(fields, expand);
+        if (!filter.isValid() || view == null){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        String etag = tableVersions.etag(Table.APPOINTMENTS, request);
+        if (etag != null && request.checkNotModified(etag)){
+            return null;
+        }
+        if (unpaged){
+            return shape(Keyset.all(filter.isEmpty() ? appointmentRepository.findAll() : appointmentRepository.findFiltered(filter, 0L, Integer.MAX_VALUE)), view);
+        }
+        if (!Keyset.isValid(limit)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
 
-        appointmentRepository.findAll().forEach(appointments::add);
+        long afterId = after == null ? 0L : after;
+        List<Appointment> appointments = filter.isEmpty()
+                ? appointmentRepository.findByIdGreaterThanOrderByIdAsc(afterId, Keyset.probe(limit))
+                : appointmentRepository.findFiltered(filter, afterId, limit + 1);
+        return shape(Keyset.page(appointments, limit, Appointment::getId), view);
+    }
 
-        if (appointments.isEmpty()){
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    // The matching rows as one JSON array, written while they are read. An empty result gives []
+    @GetMapping(value = "/appointments", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllAppointments(AppointmentFilter filter,
+            @RequestParam(value = "fields", required = false) String fields,
+            @RequestParam(value = "expand", required = false) String expand, WebRequest request){
+        AppointmentView view = AppointmentView.parse(fields, expand);
+        // The included section needs every row before it can be written
+        if (!filter.isValid() || view == null || view.getExpand() == AppointmentView.Expand.INCLUDED){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        String etag = tableVersions.etag(Table.APPOINTMENTS, request);
+        if (etag != null && request.checkNotModified(etag)){
+            return null;
+        }
+        StreamingResponseBody body = view.isDefault()
+                ? jsonStreams.write(() -> appointmentRepository.streamFiltered(filter))
+                : jsonStreams.write(() -> appointmentRepository.streamFiltered(filter), view::of);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    // Server-Sent Events of the bookings and deletions from now on, for displays that would otherwise poll the list
+    @GetMapping(value = "/appointments/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamAppointmentEvents(@RequestParam(value = "room", required = false) String roomName,
+            @RequestParam(value = "doctor", required = false) Long doctorId){
+        SseEmitter emitter = eventHub.subscribe(roomName, doctorId);
+        if (emitter == null){
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
         }
+        return new ResponseEntity<>(emitter, HttpStatus.OK);
+    }
 
-        return new ResponseEntity<>(appointments, HttpStatus.OK);
+    // Appointments created and deleted after the client's version. 410 when the version is unknown or pruned here, sync from scratch
+    @GetMapping("/appointments/changes")
+    public ResponseEntity<ChangeFeed> getAppointmentChanges(@RequestParam(value = "since", defaultValue = "0") long since,
+            @RequestParam(value = "limit", defaultValue = Keyset.DEFAULT_LIMIT) int limit){
+        if (since < 0 || !Keyset.isValid(limit)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        Optional<ChangeFeed> feed = changeLog.changesSince(since, limit);
+        if (!feed.isPresent()){
+            return new ResponseEntity<>(HttpStatus.GONE);
+        }
+        return new ResponseEntity<>(feed.get(), HttpStatus.OK);
     }
 
     @GetMapping("/appointments/{id}")
     public ResponseEntity<Appointment> getAppointmentById(@PathVariable("id") long id){
-        Optional<Appointment> appointment = appointmentRepository.findById(id);
+        Optional<Appointment> appointment = entityReadCache.appointment(id, appointmentRepository::findById);
 
         if (appointment.isPresent()){
             return new ResponseEntity<>(appointment.get(),HttpStatus.OK);
@@ -52,25 +170,78 @@ public class AppointmentController {
 
     @PostMapping("/appointment")
     public ResponseEntity<Appointment> createAppointment(@RequestBody Appointment appointment){
-        List<Appointment> appointments = new ArrayList<>();
+        if (appointment.getStartsAt().isAfter(appointment.getFinishesAt()) || appointment.getStartsAt().isEqual(appointment.getFinishesAt())
+                || appointment.getStartsAt().plus(Appointment.MAX_DURATION).isBefore(appointment.getFinishesAt())) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
 
-        appointmentRepository.findAll().forEach(appointments::add);
-        
-        if (appointment.getStartsAt().isAfter(appointment.getFinishesAt()) || appointment.getStartsAt().isEqual(appointment.getFinishesAt())) {
+        Optional<Appointment> addAppointment = bookingCoordinator.book(appointment);
+        if (!addAppointment.isPresent()){
+            return new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        return new ResponseEntity<>(addAppointment.get(), HttpStatus.OK);
+
+    }
+
+    @PostMapping("/appointments")
+    public ResponseEntity<AppointmentReference> createAppointmentByReference(@RequestBody AppointmentReference request){
+        if (request.getPatientId() == null || request.getDoctorId() == null || request.getRoomName() == null
+                || request.getStartsAt() == null || request.getFinishesAt() == null
+                || !request.getStartsAt().isBefore(request.getFinishesAt())
+                || request.getStartsAt().plus(Appointment.MAX_DURATION).isBefore(request.getFinishesAt())){
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
 
-        for (Appointment a: appointments){
-            if (appointment.overlaps(a)){
-                return new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE);
-            }
-        } 
+        Optional<Appointment> addAppointment;
+        try {
+            addAppointment = bookingCoordinator.book(request.getPatientId(), request.getDoctorId(), request.getRoomName(),
+                    request.getStartsAt(), request.getFinishesAt());
+        } catch (EntityNotFoundException | DataIntegrityViolationException e){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        if (!addAppointment.isPresent()){
+            return new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE);
+        }
 
-        Appointment addAppointment = appointmentRepository.save(appointment);
-        return new ResponseEntity<>(addAppointment, HttpStatus.OK);
+        return new ResponseEntity<>(AppointmentReference.of(addAppointment.get()), HttpStatus.OK);
+    }
 
+    @PostMapping("/appointments/batch")
+    public ResponseEntity<BatchResult> createAppointments(@RequestBody List<Appointment> appointments){
+        return new ResponseEntity<>(bookingCoordinator.bookAll(appointments), HttpStatus.OK);
     }
 
+    @PostMapping("/appointments/suggest")
+    public ResponseEntity<List<Suggestion>> suggestAppointments(@RequestBody SuggestionRequest request){
+        if (request.getDoctorId() == null || request.getPatientId() == null
+                || request.getFrom() == null || request.getTo() == null || !request.getFrom().isBefore(request.getTo())
+                || request.getDuration() <= 0 || request.getLimit() <= 0){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        // Every room and day of the window may be walked
+        if (request.getLimit() > suggestMaxLimit || request.getFrom().plusDays(suggestMaxDays).isBefore(request.getTo())){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        if (!doctorRepository.existsById(request.getDoctorId()) || !patientRepository.existsById(request.getPatientId())){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        if (request.getRooms() != null){
+            for (String roomName: request.getRooms()){
+                if (!roomRepository.findByRoomName(roomName).isPresent()){
+                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                }
+            }
+        }
+
+        List<Suggestion> suggestions = slotFinder.suggest(request);
+        if (suggestions.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        return new ResponseEntity<>(suggestions, HttpStatus.OK);
+    }
 
     @DeleteMapping("/appointments/{id}")
     public ResponseEntity<HttpStatus> deleteAppointment(@PathVariable("id") long id){
@@ -81,7 +252,7 @@ public class AppointmentController {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
 
-        appointmentRepository.deleteById(id);
+        bookingCoordinator.cancel(appointment.get());
 
         return new ResponseEntity<>(HttpStatus.OK);
         
@@ -89,8 +260,14 @@ public class AppointmentController {
 
     @DeleteMapping("/appointments")
     public ResponseEntity<HttpStatus> deleteAllAppointments(){
-        appointmentRepository.deleteAll();
+        bookingCoordinator.cancelAll();
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
+    private static ResponseEntity<?> shape(ResponseEntity<List<Appointment>> response, AppointmentView view){
+        if (view.isDefault() || response.getBody() == null){
+            return response;
+        }
+        return new ResponseEntity<>(view.of(response.getBody()), response.getHeaders(), response.getStatusCode());
+    }
 }
@@ -0,0 +1,140 @@
+package com.example.demo.controllers;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.demo.booking.AppointmentEvent;
+import com.example.demo.booking.AppointmentReference;
+import com.example.demo.entities.Appointment;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * In-process hub behind GET /api/appointments/stream. Every
+ * {@link AppointmentEvent} of this instance is pushed to the subscribers
+ * whose room and doctor filters it matches; a CLEARED event matches every
+ * filter. Subscribers only hear about bookings made through this instance.
+ * Appointments are sent as {@link AppointmentReference}s, under the change
+ * log version of the write as event id, so a client that lost events can
+ * catch up from GET /api/appointments/changes?since=&lt;last id&gt;.
+ */
+@Component
+public class AppointmentEventHub {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentEventHub.class);
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Value("${sse.buffer-size:256}")
+    int bufferSize;
+
+    @Value("${sse.overflow:drop}")
+    String overflow;
+
+    @Value("${sse.max-subscribers:1000}")
+    int maxSubscribers;
+
+    @Value("${sse.senders:8}")
+    int senderThreads;
+
+    @Value("${sse.heartbeat-seconds:15}")
+    long heartbeatSeconds;
+
+    @Value("${sse.timeout-minutes:30}")
+    long timeoutMinutes;
+
+    private ExecutorService senders;
+    private ScheduledExecutorService heartbeats;
+    private SseFanout<AppointmentEvent> fanout;
+
+    @PostConstruct
+    void init(){
+        AtomicInteger threads = new AtomicInteger();
+        senders = Executors.newFixedThreadPool(senderThreads, task -> {
+            Thread thread = new Thread(task, "sse-sender-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeats = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "sse-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        fanout = new SseFanout<>(bufferSize, SseFanout.Overflow.valueOf(overflow.toUpperCase(Locale.ROOT)), maxSubscribers, senders);
+        if (heartbeatSeconds > 0){
+            heartbeats.scheduleWithFixedDelay(fanout::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown(){
+        heartbeats.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    // Null when there are too many subscribers already. A null room or doctor matches every one
+    public SseEmitter subscribe(String roomName, Long doctorId){
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(timeoutMinutes));
+        if (fanout.subscribe(emitter, event -> matches(event, roomName, doctorId)) == null){
+            return null;
+        }
+        return emitter;
+    }
+
+    // Runs inside the booking that published the event, so push must never fail it or the listeners after it
+    @EventListener
+    public void onAppointmentEvent(AppointmentEvent event){
+        try {
+            fanout.publish(event, event.getVersion(), event.getType().name().toLowerCase(Locale.ROOT), () -> render(event));
+        } catch (RuntimeException e){
+            log.warn("Could not push {} event to the appointment stream", event.getType(), e);
+        }
+    }
+
+    public int subscribers(){
+        return fanout.subscribers();
+    }
+
+    public long overflowed(){
+        return fanout.overflowed();
+    }
+
+    private static boolean matches(AppointmentEvent event, String roomName, Long doctorId){
+        Appointment appointment = event.getAppointment();
+        if (appointment == null){
+            return true;
+        }
+        if (roomName != null && (appointment.getRoom() == null || !roomName.equals(appointment.getRoom().getRoomName()))){
+            return false;
+        }
+        return doctorId == null || (appointment.getDoctor() != null && appointment.getDoctor().getId() == doctorId);
+    }
+
+    // Ids only: bookings by reference carry uninitialized proxies of the patient, doctor and room
+    private String render(AppointmentEvent event){
+        if (event.getAppointment() == null){
+            return "{}";
+        }
+        try {
+            return objectMapper.writeValueAsString(AppointmentReference.of(event.getAppointment()));
+        } catch (JsonProcessingException e){
+            throw new IllegalStateException("Cannot serialize appointment " + event.getAppointment().getId(), e);
+        }
+    }
+}
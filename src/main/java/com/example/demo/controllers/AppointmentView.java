@@ -0,0 +1,226 @@
+package com.example.demo.controllers;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import com.example.demo.entities.Appointment;
+import com.example.demo.json.WireDateTime;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+/**
+ * Shape of the appointments of a list response, from the {@code fields} and
+ * {@code expand} parameters. {@code fields} keeps only the named properties,
+ * {@code expand=none} writes the patient, doctor and room as
+ * {@code patientId}, {@code doctorId} and {@code roomName}, and
+ * {@code expand=included} does the same and sends every referenced entity
+ * once, in an {@code included} section next to the {@code data} array.
+ *
+ * The appointments are written field by field with the generator instead of
+ * through bean introspection; only the expanded entities go through the
+ * mapper's serializers.
+ */
+public final class AppointmentView {
+
+    public enum Field {
+        ID("id", "id"),
+        PATIENT("patient", "patientId"),
+        DOCTOR("doctor", "doctorId"),
+        ROOM("room", "roomName"),
+        STARTS_AT("startsAt", "startsAt"),
+        FINISHES_AT("finishesAt", "finishesAt");
+
+        final String expanded;
+        final String reference;
+
+        Field(String expanded, String reference){
+            this.expanded = expanded;
+            this.reference = reference;
+        }
+
+        static Field of(String name){
+            for (Field field: values()){
+                if (field.expanded.equals(name) || field.reference.equals(name)){
+                    return field;
+                }
+            }
+            return null;
+        }
+    }
+
+    public enum Expand { ALL, NONE, INCLUDED }
+
+    private final EnumSet<Field> fields;
+    private final Expand expand;
+
+    private AppointmentView(EnumSet<Field> fields, Expand expand){
+        this.fields = fields;
+        this.expand = expand;
+    }
+
+    /**
+     * @param fields comma separated property names, null for all of them
+     * @param expand all, none or included, null for all
+     * @return null when a field or the expand mode is unknown
+     */
+    public static AppointmentView parse(String fields, String expand){
+        Expand mode;
+        try {
+            mode = expand == null ? Expand.ALL : Expand.valueOf(expand.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e){
+            return null;
+        }
+        EnumSet<Field> selected = EnumSet.allOf(Field.class);
+        if (fields != null){
+            selected = EnumSet.noneOf(Field.class);
+            for (String name: fields.split(",")){
+                Field field = Field.of(name.trim());
+                if (field == null){
+                    return null;
+                }
+                selected.add(field);
+            }
+        }
+        return new AppointmentView(selected, mode);
+    }
+
+    // The full entities, serialized as they always were
+    public boolean isDefault(){
+        return expand == Expand.ALL && fields.size() == Field.values().length;
+    }
+
+    public Expand getExpand(){
+        return this.expand;
+    }
+
+    public JsonSerializable of(Appointment appointment){
+        return new Serializer(){
+            @Override
+            public void serialize(JsonGenerator gen, SerializerProvider provider) throws IOException {
+                write(appointment, gen, provider);
+            }
+        };
+    }
+
+    // An array, or the data and included sections for expand=included
+    public JsonSerializable of(List<Appointment> appointments){
+        return new Serializer(){
+            @Override
+            public void serialize(JsonGenerator gen, SerializerProvider provider) throws IOException {
+                if (expand != Expand.INCLUDED){
+                    writeArray(appointments, gen, provider);
+                    return;
+                }
+                gen.writeStartObject();
+                gen.writeFieldName("data");
+                writeArray(appointments, gen, provider);
+                gen.writeObjectFieldStart("included");
+                if (fields.contains(Field.PATIENT)){
+                    writeIncluded("patients", appointments, Field.PATIENT, gen, provider);
+                }
+                if (fields.contains(Field.DOCTOR)){
+                    writeIncluded("doctors", appointments, Field.DOCTOR, gen, provider);
+                }
+                if (fields.contains(Field.ROOM)){
+                    writeIncluded("rooms", appointments, Field.ROOM, gen, provider);
+                }
+                gen.writeEndObject();
+                gen.writeEndObject();
+            }
+        };
+    }
+
+    private void writeArray(List<Appointment> appointments, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartArray();
+        for (Appointment appointment: appointments){
+            write(appointment, gen, provider);
+        }
+        gen.writeEndArray();
+    }
+
+    private void write(Appointment appointment, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject();
+        for (Field field: fields){
+            switch (field){
+                case ID:
+                    gen.writeNumberField("id", appointment.getId());
+                    break;
+                case PATIENT:
+                    if (expand == Expand.ALL){
+                        provider.defaultSerializeField(field.expanded, appointment.getPatient(), gen);
+                    } else if (appointment.getPatient() == null){
+                        gen.writeNullField(field.reference);
+                    } else {
+                        gen.writeNumberField(field.reference, appointment.getPatient().getId());
+                    }
+                    break;
+                case DOCTOR:
+                    if (expand == Expand.ALL){
+                        provider.defaultSerializeField(field.expanded, appointment.getDoctor(), gen);
+                    } else if (appointment.getDoctor() == null){
+                        gen.writeNullField(field.reference);
+                    } else {
+                        gen.writeNumberField(field.reference, appointment.getDoctor().getId());
+                    }
+                    break;
+                case ROOM:
+                    if (expand == Expand.ALL){
+                        provider.defaultSerializeField(field.expanded, appointment.getRoom(), gen);
+                    } else {
+                        gen.writeStringField(field.reference, appointment.getRoom() == null ? null : appointment.getRoom().getRoomName());
+                    }
+                    break;
+                case STARTS_AT:
+                    writeDateTime(field.expanded, appointment.getStartsAt(), gen);
+                    break;
+                case FINISHES_AT:
+                    writeDateTime(field.expanded, appointment.getFinishesAt(), gen);
+                    break;
+            }
+        }
+        gen.writeEndObject();
+    }
+
+    private static void writeDateTime(String name, LocalDateTime value, JsonGenerator gen) throws IOException {
+        gen.writeFieldName(name);
+        if (value == null){
+            gen.writeNull();
+        } else if (!WireDateTime.write(value, gen)){
+            gen.writeString(WireDateTime.FORMATTER.format(value));
+        }
+    }
+
+    // Each entity once, in the order the appointments first refer to it
+    private static void writeIncluded(String name, List<Appointment> appointments, Field field,
+            JsonGenerator gen, SerializerProvider provider) throws IOException {
+        Map<Object, Object> unique = new LinkedHashMap<>();
+        for (Appointment appointment: appointments){
+            if (field == Field.PATIENT && appointment.getPatient() != null){
+                unique.putIfAbsent(appointment.getPatient().getId(), appointment.getPatient());
+            } else if (field == Field.DOCTOR && appointment.getDoctor() != null){
+                unique.putIfAbsent(appointment.getDoctor().getId(), appointment.getDoctor());
+            } else if (field == Field.ROOM && appointment.getRoom() != null){
+                unique.putIfAbsent(appointment.getRoom().getRoomName(), appointment.getRoom());
+            }
+        }
+        gen.writeArrayFieldStart(name);
+        for (Object entity: unique.values()){
+            provider.defaultSerializeValue(entity, gen);
+        }
+        gen.writeEndArray();
+    }
+
+    private abstract static class Serializer implements JsonSerializable {
+        @Override
+        public void serializeWithType(JsonGenerator gen, SerializerProvider provider, TypeSerializer typeSerializer) throws IOException {
+            serialize(gen, provider);
+        }
+    }
+}
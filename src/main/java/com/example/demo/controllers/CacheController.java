@@ -0,0 +1,34 @@
+package com.example.demo.controllers;
+
+import com.example.demo.cache.EntityCaches;
+import com.example.demo.cache.EntityReadCache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+
+@RestController
+@RequestMapping("/api")
+public class CacheController {
+
+    @Autowired
+    EntityCaches entityCaches;
+
+    @Autowired
+    EntityReadCache entityReadCache;
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStatistics(){
+        Map<String, Object> statistics = new LinkedHashMap<>(entityCaches.statistics());
+        statistics.put("byId", entityReadCache.statistics());
+        return new ResponseEntity<>(statistics, HttpStatus.OK);
+    }
+
+}
@@ -1,9 +1,12 @@
 package com.example.demo.controllers;
 
+import com.example.demo.cache.EntityCaches;
+import com.example.demo.cache.EntityReadCache;
+import com.example.demo.cache.TableVersions;
+import com.example.demo.cache.TableVersions.Table;
 import com.example.demo.repositories.*;
 import com.example.demo.entities.Doctor;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,7 +19,9 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 
 @RestController
@@ -26,22 +31,37 @@ public class DoctorController {
     @Autowired
     DoctorRepository doctorRepository;
 
-    @GetMapping("/doctors")
-    public ResponseEntity<List<Doctor>> getAllDoctors(){
-        List<Doctor> doctors = new ArrayList<>();
+    @Autowired
+    EntityCaches entityCaches;
 
-        doctorRepository.findAll().forEach(doctors::add);
+    @Autowired
+    EntityReadCache entityReadCache;
+
+    @Autowired
+    TableVersions tableVersions;
 
-        if (doctors.isEmpty()){
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    @GetMapping("/doctors")
+    public ResponseEntity<List<Doctor>> getAllDoctors(@RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", defaultValue = Keyset.DEFAULT_LIMIT) int limit,
+            @RequestParam(value = "unpaged", defaultValue = "false") boolean unpaged, WebRequest request){
+        String etag = tableVersions.etag(Table.DOCTORS, request);
+        if (etag != null && request.checkNotModified(etag)){
+            return null;
+        }
+        if (unpaged){
+            return Keyset.all(doctorRepository.findAll());
+        }
+        if (!Keyset.isValid(limit)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
 
-        return new ResponseEntity<>(doctors, HttpStatus.OK);
+        List<Doctor> doctors = doctorRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0L : after, Keyset.probe(limit));
+        return Keyset.page(doctors, limit, Doctor::getId);
     }
 
     @GetMapping("/doctors/{id}")
     public ResponseEntity<Doctor> getDoctorById(@PathVariable("id") long id){
-        Optional<Doctor> doctor = doctorRepository.findById(id);
+        Optional<Doctor> doctor = entityReadCache.doctor(id, doctorRepository::findById);
         if (! doctor.isPresent()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
@@ -53,6 +73,7 @@ public class DoctorController {
     public ResponseEntity<Doctor> createDoctor(@RequestBody Doctor doc){
         Doctor d = new Doctor(doc.getFirstName(), doc.getLastName(), doc.getAge(), doc.getEmail());
         doctorRepository.save(d);
+        tableVersions.bump(Table.DOCTORS);
         return new ResponseEntity<>(d, HttpStatus.CREATED);
     }
 
@@ -65,12 +86,18 @@ public class DoctorController {
         }
 
         doctorRepository.deleteById(id);
+        tableVersions.bump(Table.DOCTORS);
+        entityCaches.invalidate(Doctor.class, id);
+        entityReadCache.invalidateDoctor(id);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
     @DeleteMapping("/doctors")
     public ResponseEntity<HttpStatus> deleteAllDoctors(){
         doctorRepository.deleteAll();
+        tableVersions.bump(Table.DOCTORS);
+        entityCaches.invalidateAll(Doctor.class);
+        entityReadCache.invalidateAllDoctors();
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
@@ -0,0 +1,82 @@
+package com.example.demo.controllers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Writes a repository stream as a JSON array, element by element, while the
+ * rows are still being fetched. Every {@value #CHUNK} elements the output is
+ * flushed and the persistence context cleared, so neither the response nor
+ * the loaded entities pile up in memory.
+ */
+@Component
+public class JsonStreams {
+
+    // Matches the fetch size hinted on the streaming queries
+    static final int CHUNK = 500;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init(){
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+    }
+
+    // The query runs on the thread writing the response, inside its own read-only transaction
+    public <T> StreamingResponseBody write(Supplier<Stream<T>> query){
+        return write(query, Function.identity());
+    }
+
+    // Writes what view makes of each row instead of the row itself
+    public <T> StreamingResponseBody write(Supplier<Stream<T>> query, Function<? super T, ?> view){
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return out -> transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<T> rows = query.get()){
+                JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartArray();
+                int written = 0;
+                for (Iterator<T> it = rows.iterator(); it.hasNext();){
+                    writer.writeValue(generator, view.apply(it.next()));
+                    if (++written % CHUNK == 0){
+                        generator.flush();
+                        entityManager.clear();
+                    }
+                }
+                generator.writeEndArray();
+                generator.close();
+            } catch (IOException e){
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.demo.controllers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Keyset pagination of the list endpoints: {@code ?after=<key>&limit=<n>}
+ * returns the rows with a key greater than {@code after} in key order, read
+ * by a range scan of the primary key index however deep the page. When more
+ * rows follow, the key to ask for next is sent in the
+ * {@value #NEXT_CURSOR} header. {@code ?unpaged=true} returns the whole table.
+ */
+final class Keyset {
+
+    static final String NEXT_CURSOR = "X-Next-Cursor";
+
+    static final String DEFAULT_LIMIT = "100";
+
+    static final int MAX_LIMIT = 1000;
+
+    private Keyset(){
+    }
+
+    static boolean isValid(int limit){
+        return limit > 0 && limit <= MAX_LIMIT;
+    }
+
+    // One row more than the page, to tell whether there is a next one
+    static Pageable probe(int limit){
+        return PageRequest.of(0, limit + 1);
+    }
+
+    static <T> ResponseEntity<List<T>> page(List<T> rows, int limit, Function<T, ?> key){
+        if (rows.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        if (rows.size() <= limit){
+            return new ResponseEntity<>(rows, HttpStatus.OK);
+        }
+        List<T> page = new ArrayList<>(rows.subList(0, limit));
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(NEXT_CURSOR, String.valueOf(key.apply(page.get(limit - 1))));
+        return new ResponseEntity<>(page, headers, HttpStatus.OK);
+    }
+
+    static <T> ResponseEntity<List<T>> all(Iterable<T> rows){
+        List<T> list = new ArrayList<>();
+        rows.forEach(list::add);
+        if (list.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        return new ResponseEntity<>(list, HttpStatus.OK);
+    }
+}
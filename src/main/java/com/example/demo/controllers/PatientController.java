@@ -1,14 +1,18 @@
 
 package com.example.demo.controllers;
 
+import com.example.demo.cache.EntityCaches;
+import com.example.demo.cache.EntityReadCache;
+import com.example.demo.cache.TableVersions;
+import com.example.demo.cache.TableVersions.Table;
 import com.example.demo.repositories.*;
 import com.example.demo.entities.Patient;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -17,7 +21,10 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
 @RestController
@@ -27,22 +34,50 @@ public class PatientController {
     @Autowired
     PatientRepository patientRepository;
 
-    @GetMapping("/patients")
-    public ResponseEntity<List<Patient>> getAllPatients(){
-        List<Patient> patients = new ArrayList<>();
+    @Autowired
+    EntityCaches entityCaches;
+
+    @Autowired
+    EntityReadCache entityReadCache;
 
-        patientRepository.findAll().forEach(patients::add);
+    @Autowired
+    TableVersions tableVersions;
+
+    @Autowired
+    JsonStreams jsonStreams;
 
-        if (patients.isEmpty()){
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    @GetMapping("/patients")
+    public ResponseEntity<List<Patient>> getAllPatients(@RequestParam(value = "after", required = false) Long after,
+            @RequestParam(value = "limit", defaultValue = Keyset.DEFAULT_LIMIT) int limit,
+            @RequestParam(value = "unpaged", defaultValue = "false") boolean unpaged, WebRequest request){
+        String etag = tableVersions.etag(Table.PATIENTS, request);
+        if (etag != null && request.checkNotModified(etag)){
+            return null;
+        }
+        if (unpaged){
+            return Keyset.all(patientRepository.findAll());
+        }
+        if (!Keyset.isValid(limit)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
 
-        return new ResponseEntity<>(patients, HttpStatus.OK);
+        List<Patient> patients = patientRepository.findByIdGreaterThanOrderByIdAsc(after == null ? 0L : after, Keyset.probe(limit));
+        return Keyset.page(patients, limit, Patient::getId);
+    }
+
+    // The whole table as one JSON array, written while it is read. Always 200, an empty table gives []
+    @GetMapping(value = "/patients", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamAllPatients(WebRequest request){
+        String etag = tableVersions.etag(Table.PATIENTS, request);
+        if (etag != null && request.checkNotModified(etag)){
+            return null;
+        }
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(jsonStreams.write(patientRepository::streamAll));
     }
 
     @GetMapping("/patients/{id}")
     public ResponseEntity<Patient> getPatientById(@PathVariable("id") long id){
-        Optional<Patient> patient = patientRepository.findById(id);
+        Optional<Patient> patient = entityReadCache.patient(id, patientRepository::findById);
         if (! patient.isPresent()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
@@ -53,6 +88,7 @@ public class PatientController {
     public ResponseEntity<Patient> createPatient(@RequestBody Patient pat){
         Patient d = new Patient(pat.getFirstName(), pat.getLastName(), pat.getAge(), pat.getEmail());
         patientRepository.save(d);
+        tableVersions.bump(Table.PATIENTS);
         return new ResponseEntity<>(d, HttpStatus.CREATED);
     }
 
@@ -63,12 +99,18 @@ public class PatientController {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
         patientRepository.deleteById(id);
+        tableVersions.bump(Table.PATIENTS);
+        entityCaches.invalidate(Patient.class, id);
+        entityReadCache.invalidatePatient(id);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
     @DeleteMapping("/patients")
     public ResponseEntity<HttpStatus> deleteAllPatients(){
         patientRepository.deleteAll();
+        tableVersions.bump(Table.PATIENTS);
+        entityCaches.invalidateAll(Patient.class);
+        entityReadCache.invalidateAllPatients();
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
@@ -1,23 +1,34 @@
 
 package com.example.demo.controllers;
 
+import com.example.demo.cache.EntityCaches;
+import com.example.demo.cache.EntityReadCache;
+import com.example.demo.cache.TableVersions;
+import com.example.demo.cache.TableVersions.Table;
 import com.example.demo.repositories.*;
+import com.example.demo.booking.FreeSlot;
+import com.example.demo.booking.RoomAvailability;
 import com.example.demo.entities.Room;
 
-import java.util.ArrayList;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 
 @RestController
@@ -27,32 +38,75 @@ public class RoomController {
     @Autowired
     RoomRepository roomRepository;
 
-    @GetMapping("/rooms")
-    public ResponseEntity<List<Room>> getAllRooms(){
-        List<Room> rooms = new ArrayList<>();
+    @Autowired
+    RoomAvailability roomAvailability;
+
+    @Autowired
+    EntityCaches entityCaches;
 
-        roomRepository.findAll().forEach(rooms::add);
+    @Autowired
+    EntityReadCache entityReadCache;
 
-        if (rooms.isEmpty()){
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    @Autowired
+    TableVersions tableVersions;
+
+    @Value("${availability.max-days:31}")
+    int availabilityMaxDays;
+
+    @GetMapping("/rooms")
+    public ResponseEntity<List<Room>> getAllRooms(@RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "limit", defaultValue = Keyset.DEFAULT_LIMIT) int limit,
+            @RequestParam(value = "unpaged", defaultValue = "false") boolean unpaged, WebRequest request){
+        String etag = tableVersions.etag(Table.ROOMS, request);
+        if (etag != null && request.checkNotModified(etag)){
+            return null;
+        }
+        if (unpaged){
+            return Keyset.all(roomRepository.findAll());
+        }
+        if (!Keyset.isValid(limit)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
 
-        return new ResponseEntity<>(rooms, HttpStatus.OK);
+        List<Room> rooms = roomRepository.findByRoomNameGreaterThanOrderByRoomNameAsc(after == null ? "" : after, Keyset.probe(limit));
+        return Keyset.page(rooms, limit, Room::getRoomName);
     }
 
     @GetMapping("/rooms/{roomName}")
     public ResponseEntity<Room> getRoomByRoomName(@PathVariable("roomName") String roomName){
-        Optional<Room> room = roomRepository.findByRoomName(roomName);
+        Optional<Room> room = entityReadCache.room(roomName, roomRepository::findByRoomName);
         if (!room.isPresent()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
         return new ResponseEntity<>(room.get(), HttpStatus.OK);
     }
 
+    // Free intervals of the room inside [from, to) lasting at least minDuration minutes, 400 for a range over availability.max-days
+    @GetMapping("/rooms/{roomName}/availability")
+    public ResponseEntity<List<FreeSlot>> getRoomAvailability(@PathVariable("roomName") String roomName,
+            @RequestParam("from") @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime from,
+            @RequestParam("to") @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime to,
+            @RequestParam(value = "minDuration", defaultValue = "0") long minDuration){
+        if (!from.isBefore(to) || from.plusDays(availabilityMaxDays).isBefore(to) || minDuration < 0){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (!roomRepository.findByRoomName(roomName).isPresent()){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        List<FreeSlot> slots = roomAvailability.findFreeSlots(roomName, from, to, Duration.ofMinutes(minDuration));
+        if (slots.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        return new ResponseEntity<>(slots, HttpStatus.OK);
+    }
+
     @PostMapping("/room")
     public ResponseEntity<Room> createRoom(@RequestBody Room room){
         Room tmp = new Room(room.getRoomName());
         roomRepository.save(tmp);
+        tableVersions.bump(Table.ROOMS);
+        entityCaches.invalidate(Room.class, tmp.getRoomName());
         return new ResponseEntity<>(tmp, HttpStatus.CREATED);
     }
 
@@ -63,12 +117,20 @@ public class RoomController {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
         roomRepository.deleteByRoomName(roomName);
+        tableVersions.bump(Table.ROOMS);
+        roomAvailability.invalidateRoom(roomName);
+        entityCaches.invalidate(Room.class, roomName);
+        entityReadCache.invalidateRoom(roomName);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
     @DeleteMapping("/rooms")
     public ResponseEntity<HttpStatus> deleteAllRooms(){
         roomRepository.deleteAll();
+        tableVersions.bump(Table.ROOMS);
+        roomAvailability.invalidateAll();
+        entityCaches.invalidateAll(Room.class);
+        entityReadCache.invalidateAllRooms();
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
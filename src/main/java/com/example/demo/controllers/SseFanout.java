@@ -0,0 +1,198 @@
+package com.example.demo.controllers;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Fans events out to Server-Sent Events subscribers. Publishing only offers
+ * the event to a bounded queue per subscriber and never waits for a client;
+ * the queues are drained by the sender executor, one task per subscriber at
+ * a time, so the events of a subscriber stay in order.
+ *
+ * A subscriber whose queue is full is either sent a {@code dropped} event
+ * with the number of events it missed before its next event (DROP), or
+ * disconnected (DISCONNECT). Either way it has to catch up from elsewhere.
+ * Events are sent with the id they are published with, none when it is 0.
+ */
+public class SseFanout<T> {
+
+    public enum Overflow { DROP, DISCONNECT }
+
+    // Serialized once, however many subscribers receive it
+    private static final class Message {
+        final long id;
+        final String name;
+        final String data;
+
+        Message(long id, String name, String data){
+            this.id = id;
+            this.name = name;
+            this.data = data;
+        }
+    }
+
+    private static final Message HEARTBEAT = new Message(0, null, null);
+
+    public final class Subscription {
+        private final SseEmitter emitter;
+        private final Predicate<T> filter;
+        private final BlockingQueue<Message> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicLong dropped = new AtomicLong();
+        private volatile boolean closed;
+
+        Subscription(SseEmitter emitter, Predicate<T> filter){
+            this.emitter = emitter;
+            this.filter = filter;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        public long dropped(){
+            return this.dropped.get();
+        }
+
+        public boolean isClosed(){
+            return this.closed;
+        }
+
+        void offer(Message message){
+            if (closed){
+                return;
+            }
+            if (!queue.offer(message)){
+                if (message == HEARTBEAT){
+                    return;
+                }
+                overflowed.increment();
+                if (overflow == Overflow.DISCONNECT){
+                    close();
+                    // Completing writes to the client, which the publishing thread must not wait for
+                    senders.execute(emitter::complete);
+                    return;
+                }
+                dropped.incrementAndGet();
+            }
+            if (draining.compareAndSet(false, true)){
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain(){
+            try {
+                while (true){
+                    Message message = queue.poll();
+                    if (message == null){
+                        draining.set(false);
+                        // An offer may have slipped in after the poll and seen the flag still set
+                        if (queue.isEmpty() || !draining.compareAndSet(false, true)){
+                            return;
+                        }
+                        continue;
+                    }
+                    if (closed){
+                        return;
+                    }
+                    long missed = dropped.getAndSet(0);
+                    if (missed > 0){
+                        emitter.send(SseEmitter.event().name("dropped").data(missed));
+                    }
+                    if (message == HEARTBEAT){
+                        emitter.send(SseEmitter.event().comment("heartbeat"));
+                    } else {
+                        SseEmitter.SseEventBuilder event = SseEmitter.event();
+                        if (message.id != 0){
+                            event.id(Long.toString(message.id));
+                        }
+                        emitter.send(event.name(message.name).data(message.data, MediaType.APPLICATION_JSON));
+                    }
+                }
+            } catch (IOException | RuntimeException e){
+                // The client went away, the emitter is already completed or the event could not be written.
+                // Either way this subscriber is done, and nothing may stay stuck in draining
+                close();
+                draining.set(false);
+                try {
+                    emitter.completeWithError(e);
+                } catch (RuntimeException ignored){
+                    // Completed already
+                }
+            }
+        }
+
+        private void close(){
+            closed = true;
+            subscriptions.remove(this);
+            queue.clear();
+        }
+    }
+
+    private final int bufferSize;
+    private final Overflow overflow;
+    private final int maxSubscribers;
+    private final Executor senders;
+
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final LongAdder overflowed = new LongAdder();
+
+    public SseFanout(int bufferSize, Overflow overflow, int maxSubscribers, Executor senders){
+        this.bufferSize = Math.max(1, bufferSize);
+        this.overflow = overflow;
+        this.maxSubscribers = maxSubscribers;
+        this.senders = senders;
+    }
+
+    // Null when the hub is at its subscriber limit
+    public Subscription subscribe(SseEmitter emitter, Predicate<T> filter){
+        if (subscriptions.size() >= maxSubscribers){
+            return null;
+        }
+        Subscription subscription = new Subscription(emitter, filter);
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(e -> subscription.close());
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    // The data is only rendered when at least one subscriber takes the event
+    public void publish(T event, long id, String name, Supplier<String> data){
+        Message message = null;
+        for (Subscription subscription: subscriptions){
+            if (!subscription.filter.test(event)){
+                continue;
+            }
+            if (message == null){
+                message = new Message(id, name, data.get());
+            }
+            subscription.offer(message);
+        }
+    }
+
+    // A comment line to every subscriber with room in its queue, which keeps proxies from cutting them and finds the dead ones
+    public void heartbeat(){
+        for (Subscription subscription: subscriptions){
+            subscription.offer(HEARTBEAT);
+        }
+    }
+
+    public int subscribers(){
+        return subscriptions.size();
+    }
+
+    // Events that did not fit the queue of a subscriber
+    public long overflowed(){
+        return overflowed.sum();
+    }
+}
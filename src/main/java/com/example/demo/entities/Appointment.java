@@ -1,5 +1,6 @@
 package com.example.demo.entities;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -9,22 +10,31 @@ import javax.persistence.*;
 import com.fasterxml.jackson.annotation.JsonFormat;
 
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_appointment_room_time", columnList = "room_id, startsAt, finishesAt"),
+        @Index(name = "idx_appointment_doctor_time", columnList = "doctor_id, startsAt, finishesAt"),
+        @Index(name = "idx_appointment_patient_time", columnList = "patient_id, startsAt, finishesAt"),
+        @Index(name = "idx_appointment_time", columnList = "startsAt, finishesAt")
+})
 public class Appointment {
 
+    // No appointment lasts longer, so overlap queries only look this far back from the start of a range
+    public static final Duration MAX_DURATION = Duration.ofHours(24);
+
     @Id
     @GeneratedValue(strategy=GenerationType.AUTO)
     private long id;
 
 
-    @ManyToOne(cascade = CascadeType.ALL)
+    @ManyToOne
     @JoinColumn(name = "patient_id", referencedColumnName = "id")
     private Patient patient;
 
-    @ManyToOne(cascade = CascadeType.ALL)
+    @ManyToOne
     @JoinColumn(name = "doctor_id", referencedColumnName = "id")
     private Doctor doctor;
 
-    @ManyToOne(cascade = CascadeType.ALL)
+    @ManyToOne
     @JoinColumn(name = "room_id", referencedColumnName = "roomName")
     private Room room;
 
@@ -93,17 +103,14 @@ public class Appointment {
         /// True when:
         // Case 1: A.starts == B.starts
         // Case 2: A.finishes == B.finishes 
-        // Case 3: A.starts < B.finishes && B.finishes < A.finishes
-        // Case 4: B.starts < A.starts && A.finishes < B.finishes
+        // Case 3: A.starts < B.finishes && B.starts < A.finishes
+        //         (partial overlap on either side, or one enclosing the other)
         if (appointment.getRoom().getRoomName().equals(this.getRoom().getRoomName())){ 
             if (this.getStartsAt().equals(appointment.getStartsAt()) || 
                     appointment.getFinishesAt().equals(this.getFinishesAt())){
                 return true;
                     }
-            if (appointment.getFinishesAt().isAfter(this.getStartsAt()) && appointment.getFinishesAt().isBefore(this.getFinishesAt())){
-                return true;
-            }
-            if ( appointment.getStartsAt().isAfter(this.getStartsAt()) && appointment.getStartsAt().isBefore(this.getFinishesAt())){
+            if (this.getStartsAt().isBefore(appointment.getFinishesAt()) && appointment.getStartsAt().isBefore(this.getFinishesAt())){
                 return true;
             }
         }
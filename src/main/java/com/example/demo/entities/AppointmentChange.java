@@ -0,0 +1,70 @@
+package com.example.demo.entities;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import org.springframework.data.domain.Persistable;
+
+// One row per appointment write, numbered in the order of the writes with gaps left by rollbacks. CLEARED stands for deleting every appointment
+@Entity
+@Table(name = "appointment_change")
+public class AppointmentChange implements Persistable<Long> {
+
+    public enum Type { CREATED, DELETED, CLEARED }
+
+    @Id
+    private long version;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private Type type;
+
+    private long appointmentId;
+
+    // When the write was logged, by the clock of the instance writing it
+    private LocalDateTime recordedAt;
+
+    public AppointmentChange(){
+        super();
+    }
+
+    public AppointmentChange(long version, Type type, long appointmentId){
+        this.version = version;
+        this.type = type;
+        this.appointmentId = appointmentId;
+        this.recordedAt = LocalDateTime.now();
+    }
+
+    public long getVersion(){
+        return this.version;
+    }
+
+    @Override
+    public Long getId(){
+        return this.version;
+    }
+
+    // Changes are only ever inserted, saving them must not select the assigned version first
+    @Override
+    public boolean isNew(){
+        return true;
+    }
+
+    public Type getType(){
+        return this.type;
+    }
+
+    public long getAppointmentId(){
+        return this.appointmentId;
+    }
+
+    public LocalDateTime getRecordedAt(){
+        return this.recordedAt;
+    }
+}
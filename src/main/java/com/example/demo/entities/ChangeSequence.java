@@ -0,0 +1,38 @@
+package com.example.demo.entities;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+// Highest version a change log has reserved, instances reserve blocks of versions from it
+@Entity
+@Table(name = "change_sequence")
+public class ChangeSequence {
+
+    @Id
+    private String name;
+
+    @Column(name = "last_value")
+    private long value;
+
+    public ChangeSequence(){
+        super();
+    }
+
+    public ChangeSequence(String name){
+        this.name = name;
+    }
+
+    public String getName(){
+        return this.name;
+    }
+
+    public long getValue(){
+        return this.value;
+    }
+
+    public void setValue(long value){
+        this.value = value;
+    }
+}
@@ -2,8 +2,12 @@ package com.example.demo.entities;
 
 import javax.persistence.*;
 
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 @Entity
 @Table(name="doctors")
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "doctors")
 public class Doctor extends Person {
 
     @Id
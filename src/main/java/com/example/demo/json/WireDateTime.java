@@ -0,0 +1,103 @@
+package com.example.demo.json;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Fixed layout codec of the "HH:mm dd/MM/yyyy" wire format of every date
+ * time the API reads and writes. It formats into a per thread buffer and
+ * parses straight from the parser's characters, so neither side allocates
+ * more than the resulting {@link LocalDateTime}.
+ *
+ * Only the plain layout is handled here: years 0001 to 9999 and values in
+ * range. Everything else is left to {@link #FORMATTER}, which decides about
+ * the odd inputs it accepts (24:00, 31/04, five digit years) or rejects.
+ */
+public final class WireDateTime {
+
+    public static final String PATTERN = "HH:mm dd/MM/yyyy";
+
+    public static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern(PATTERN);
+
+    static final int LENGTH = 16;
+
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[LENGTH]);
+
+    private WireDateTime(){
+    }
+
+    // False when the year needs the formatter
+    public static boolean write(LocalDateTime value, JsonGenerator gen) throws IOException {
+        int year = value.getYear();
+        if (year < 1 || year > 9999){
+            return false;
+        }
+        char[] buffer = BUFFER.get();
+        twoDigits(buffer, 0, value.getHour());
+        buffer[2] = ':';
+        twoDigits(buffer, 3, value.getMinute());
+        buffer[5] = ' ';
+        twoDigits(buffer, 6, value.getDayOfMonth());
+        buffer[8] = '/';
+        twoDigits(buffer, 9, value.getMonthValue());
+        buffer[11] = '/';
+        twoDigits(buffer, 12, year / 100);
+        twoDigits(buffer, 14, year % 100);
+        gen.writeString(buffer, 0, LENGTH);
+        return true;
+    }
+
+    // Null when the text is not the plain layout, the formatter has the last word then
+    public static LocalDateTime parse(char[] text, int offset, int length){
+        if (length != LENGTH || text[offset + 2] != ':' || text[offset + 5] != ' '
+                || text[offset + 8] != '/' || text[offset + 11] != '/'){
+            return null;
+        }
+        int hour = twoDigits(text, offset);
+        int minute = twoDigits(text, offset + 3);
+        int day = twoDigits(text, offset + 6);
+        int month = twoDigits(text, offset + 9);
+        int century = twoDigits(text, offset + 12);
+        int yearOfCentury = twoDigits(text, offset + 14);
+        if ((hour | minute | day | month | century | yearOfCentury) < 0){
+            return null;
+        }
+        int year = century * 100 + yearOfCentury;
+        if (hour > 23 || minute > 59 || month < 1 || month > 12 || day < 1 || year < 1 || day > lengthOfMonth(year, month)){
+            return null;
+        }
+        return LocalDateTime.of(year, month, day, hour, minute);
+    }
+
+    private static void twoDigits(char[] buffer, int at, int value){
+        buffer[at] = (char) ('0' + value / 10);
+        buffer[at + 1] = (char) ('0' + value % 10);
+    }
+
+    // -1 unless both characters are ASCII digits
+    private static int twoDigits(char[] text, int at){
+        int tens = text[at] - '0';
+        int units = text[at + 1] - '0';
+        if (tens < 0 || tens > 9 || units < 0 || units > 9){
+            return -1;
+        }
+        return tens * 10 + units;
+    }
+
+    private static int lengthOfMonth(int year, int month){
+        switch (month){
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.demo.json;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.deser.ContextualDeserializer;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.jsontype.TypeDeserializer;
+import com.fasterxml.jackson.databind.type.LogicalType;
+import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
+
+/**
+ * Reads dates with {@link WireDateTime}, in front of the stock deserializer
+ * with the same pattern. Text that is not the plain layout goes to the stock
+ * deserializer untouched, so it is accepted or rejected exactly as before.
+ */
+public class WireDateTimeDeserializer extends StdDeserializer<LocalDateTime> implements ContextualDeserializer {
+
+    private final JsonDeserializer<LocalDateTime> fallback;
+    private final boolean wire;
+
+    public WireDateTimeDeserializer(){
+        this(new LocalDateTimeDeserializer(WireDateTime.FORMATTER), true);
+    }
+
+    private WireDateTimeDeserializer(JsonDeserializer<LocalDateTime> fallback, boolean wire){
+        super(LocalDateTime.class);
+        this.fallback = fallback;
+        this.wire = wire;
+    }
+
+    @Override
+    public LocalDateTime deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (wire && p.hasToken(JsonToken.VALUE_STRING)){
+            LocalDateTime value = WireDateTime.parse(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+            if (value != null){
+                return value;
+            }
+        }
+        return fallback.deserialize(p, ctxt);
+    }
+
+    @Override
+    public Object deserializeWithType(JsonParser p, DeserializationContext ctxt, TypeDeserializer typeDeserializer) throws IOException {
+        return fallback.deserializeWithType(p, ctxt, typeDeserializer);
+    }
+
+    @Override
+    public LogicalType logicalType(){
+        return LogicalType.DateTime;
+    }
+
+    // Another pattern or a leniency setting changes what the stock deserializer accepts, it takes over then
+    @Override
+    @SuppressWarnings("unchecked")
+    public JsonDeserializer<?> createContextual(DeserializationContext ctxt, BeanProperty property) throws JsonMappingException {
+        JsonDeserializer<LocalDateTime> contextual = fallback instanceof ContextualDeserializer
+                ? (JsonDeserializer<LocalDateTime>) ((ContextualDeserializer) fallback).createContextual(ctxt, property)
+                : fallback;
+        JsonFormat.Value format = findFormatOverrides(ctxt, property, handledType());
+        boolean samePattern = !format.hasPattern() || WireDateTime.PATTERN.equals(format.getPattern());
+        return new WireDateTimeDeserializer(contextual, samePattern && !format.hasLenient());
+    }
+}
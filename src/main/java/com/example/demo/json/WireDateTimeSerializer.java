@@ -0,0 +1,60 @@
+package com.example.demo.json;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
+
+/**
+ * Writes dates with {@link WireDateTime}, in front of the stock serializer
+ * with the same pattern. A property whose {@code @JsonFormat} asks for
+ * another pattern or a numeric shape gets the stock serializer alone.
+ */
+public class WireDateTimeSerializer extends StdSerializer<LocalDateTime> implements ContextualSerializer {
+
+    private final JsonSerializer<LocalDateTime> fallback;
+    private final boolean wire;
+
+    public WireDateTimeSerializer(){
+        this(new LocalDateTimeSerializer(WireDateTime.FORMATTER), true);
+    }
+
+    private WireDateTimeSerializer(JsonSerializer<LocalDateTime> fallback, boolean wire){
+        super(LocalDateTime.class);
+        this.fallback = fallback;
+        this.wire = wire;
+    }
+
+    @Override
+    public void serialize(LocalDateTime value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        if (!wire || !WireDateTime.write(value, gen)){
+            fallback.serialize(value, gen, provider);
+        }
+    }
+
+    @Override
+    public void serializeWithType(LocalDateTime value, JsonGenerator gen, SerializerProvider provider, TypeSerializer typeSerializer) throws IOException {
+        fallback.serializeWithType(value, gen, provider, typeSerializer);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public JsonSerializer<?> createContextual(SerializerProvider provider, BeanProperty property) throws JsonMappingException {
+        JsonSerializer<LocalDateTime> contextual = fallback instanceof ContextualSerializer
+                ? (JsonSerializer<LocalDateTime>) ((ContextualSerializer) fallback).createContextual(provider, property)
+                : fallback;
+        JsonFormat.Value format = findFormatOverrides(provider, property, handledType());
+        boolean samePattern = !format.hasPattern() || WireDateTime.PATTERN.equals(format.getPattern());
+        boolean asText = !(format.getShape() == JsonFormat.Shape.ARRAY || format.getShape().isNumeric());
+        return new WireDateTimeSerializer(contextual, samePattern && asText);
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.demo.repositories;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import com.example.demo.entities.AppointmentChange;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface AppointmentChangeRepository extends JpaRepository<AppointmentChange, Long> {
+    // Changes after the first version and before the second one, in version order
+    List<AppointmentChange> findByVersionGreaterThanAndVersionLessThanOrderByVersionAsc(long after, long before, Pageable pageable);
+
+    @Query("select max(c.version) from AppointmentChange c")
+    Optional<Long> findMaxVersion();
+
+    // Rows logged before recording times were kept count as old
+    @Query("select max(c.version) from AppointmentChange c where c.recordedAt < :cutoff or c.recordedAt is null")
+    Optional<Long> findMaxVersionRecordedBefore(@Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Query("delete from AppointmentChange c where c.version < :version")
+    int deleteOlderThan(@Param("version") long version);
+}
@@ -0,0 +1,83 @@
+package com.example.demo.repositories;
+
+import java.time.LocalDateTime;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+/**
+ * Optional restrictions on an appointment listing, bound from the query
+ * string. Unset fields do not restrict; from and to keep the appointments
+ * intersecting [from, to).
+ */
+public class AppointmentFilter {
+
+    private Long doctorId;
+    private Long patientId;
+    private String room;
+
+    @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime from;
+
+    @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime to;
+
+    public AppointmentFilter(){
+        super();
+    }
+
+    public AppointmentFilter(Long doctorId, Long patientId, String room, LocalDateTime from, LocalDateTime to){
+        this.doctorId = doctorId;
+        this.patientId = patientId;
+        this.room = room;
+        this.from = from;
+        this.to = to;
+    }
+
+    public boolean isEmpty(){
+        return doctorId == null && patientId == null && room == null && from == null && to == null;
+    }
+
+    public boolean isValid(){
+        return from == null || to == null || from.isBefore(to);
+    }
+
+    public Long getDoctorId(){
+        return this.doctorId;
+    }
+
+    public void setDoctorId(Long doctorId){
+        this.doctorId = doctorId;
+    }
+
+    public Long getPatientId(){
+        return this.patientId;
+    }
+
+    public void setPatientId(Long patientId){
+        this.patientId = patientId;
+    }
+
+    public String getRoom(){
+        return this.room;
+    }
+
+    public void setRoom(String room){
+        this.room = room;
+    }
+
+    public LocalDateTime getFrom(){
+        return this.from;
+    }
+
+    public void setFrom(LocalDateTime from){
+        this.from = from;
+    }
+
+    public LocalDateTime getTo(){
+        return this.to;
+    }
+
+    public void setTo(LocalDateTime to){
+        this.to = to;
+    }
+}
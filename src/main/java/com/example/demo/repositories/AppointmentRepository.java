@@ -1,14 +1,84 @@
 
 package com.example.demo.repositories;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 import com.example.demo.entities.Appointment;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
+public interface AppointmentRepository extends JpaRepository<Appointment, Long>, AppointmentRepositoryCustom {
+    // The listing and detail reads join the patient, doctor and room into the same select
+    // instead of loading each eager association with a query of its own
+    @EntityGraph(attributePaths = {"patient", "doctor", "room"})
     List<Appointment> findAll();
+
+    @EntityGraph(attributePaths = {"patient", "doctor", "room"})
+    Optional<Appointment> findById(Long id);
+
+    @EntityGraph(attributePaths = {"patient", "doctor", "room"})
+    List<Appointment> findByIdIn(Collection<Long> ids);
+
+    // Keyset page: the rows after the given key in key order
+    @EntityGraph(attributePaths = {"patient", "doctor", "room"})
+    List<Appointment> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
     Appointment save(Appointment appointment);
     void delete(Appointment appointment);
+
+    // Appointments in the room whose [startsAt, finishesAt) range intersects the given one
+    default List<Appointment> findOverlapping(String roomName, LocalDateTime startsAt, LocalDateTime finishesAt){
+        return findOverlappingStartingAfter(roomName, startsAt.minus(Appointment.MAX_DURATION), startsAt, finishesAt);
+    }
+
+    // Appointments of the doctor, resp. the patient, intersecting the given range in start order
+    default List<Appointment> findOverlappingForDoctor(long doctorId, LocalDateTime startsAt, LocalDateTime finishesAt){
+        return findOverlappingForDoctorStartingAfter(doctorId, startsAt.minus(Appointment.MAX_DURATION), startsAt, finishesAt);
+    }
+
+    default List<Appointment> findOverlappingForPatient(long patientId, LocalDateTime startsAt, LocalDateTime finishesAt){
+        return findOverlappingForPatientStartingAfter(patientId, startsAt.minus(Appointment.MAX_DURATION), startsAt, finishesAt);
+    }
+
+    // Like the ones above, only reading the appointments that start after startsAfter, which bounds the index range scanned
+    @Query("select a from Appointment a where a.room.roomName = :roomName"
+            + " and a.startsAt > :startsAfter and a.startsAt < :finishesAt and a.finishesAt > :startsAt")
+    List<Appointment> findOverlappingStartingAfter(@Param("roomName") String roomName, @Param("startsAfter") LocalDateTime startsAfter,
+            @Param("startsAt") LocalDateTime startsAt, @Param("finishesAt") LocalDateTime finishesAt);
+
+    @Query("select a from Appointment a where a.doctor.id = :doctorId"
+            + " and a.startsAt > :startsAfter and a.startsAt < :finishesAt and a.finishesAt > :startsAt order by a.startsAt")
+    List<Appointment> findOverlappingForDoctorStartingAfter(@Param("doctorId") long doctorId, @Param("startsAfter") LocalDateTime startsAfter,
+            @Param("startsAt") LocalDateTime startsAt, @Param("finishesAt") LocalDateTime finishesAt);
+
+    @Query("select a from Appointment a where a.patient.id = :patientId"
+            + " and a.startsAt > :startsAfter and a.startsAt < :finishesAt and a.finishesAt > :startsAt order by a.startsAt")
+    List<Appointment> findOverlappingForPatientStartingAfter(@Param("patientId") long patientId, @Param("startsAfter") LocalDateTime startsAfter,
+            @Param("startsAt") LocalDateTime startsAt, @Param("finishesAt") LocalDateTime finishesAt);
+
+    // Which of the room, the doctor and the patient already have an appointment intersecting
+    // the given range, a null key skips its branch
+    default List<String> findConflictingResources(String roomName, Long doctorId, Long patientId,
+            LocalDateTime startsAt, LocalDateTime finishesAt){
+        return findConflictingResourcesStartingAfter(roomName, doctorId, patientId,
+                startsAt.minus(Appointment.MAX_DURATION), startsAt, finishesAt);
+    }
+
+    // Each branch is an index range scan over the appointments starting in (startsAfter, finishesAt),
+    // at most Appointment.MAX_DURATION plus the range long whatever the history of the resource
+    @Query(value = "select 'ROOM' from appointment a where a.room_id = :roomName"
+            + " and a.starts_at > :startsAfter and a.starts_at < :finishesAt and a.finishes_at > :startsAt"
+            + " union all select 'DOCTOR' from appointment a where a.doctor_id = :doctorId"
+            + " and a.starts_at > :startsAfter and a.starts_at < :finishesAt and a.finishes_at > :startsAt"
+            + " union all select 'PATIENT' from appointment a where a.patient_id = :patientId"
+            + " and a.starts_at > :startsAfter and a.starts_at < :finishesAt and a.finishes_at > :startsAt", nativeQuery = true)
+    List<String> findConflictingResourcesStartingAfter(@Param("roomName") String roomName,
+            @Param("doctorId") Long doctorId, @Param("patientId") Long patientId, @Param("startsAfter") LocalDateTime startsAfter,
+            @Param("startsAt") LocalDateTime startsAt, @Param("finishesAt") LocalDateTime finishesAt);
 }
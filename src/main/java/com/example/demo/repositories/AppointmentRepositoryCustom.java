@@ -0,0 +1,15 @@
+package com.example.demo.repositories;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.example.demo.entities.Appointment;
+
+public interface AppointmentRepositoryCustom {
+    // Keyset page of the matching appointments after the given id, in id order
+    List<Appointment> findFiltered(AppointmentFilter filter, long afterId, int limit);
+
+    // Every matching appointment in id order, fetched in chunks while the caller consumes them.
+    // Only usable inside a transaction and the stream has to be closed.
+    Stream<Appointment> streamFiltered(AppointmentFilter filter);
+}
@@ -0,0 +1,76 @@
+package com.example.demo.repositories;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import org.hibernate.jpa.QueryHints;
+
+import com.example.demo.entities.Appointment;
+
+/**
+ * Builds the filtered listing with only the predicates that are set, so each
+ * combination is a plain conjunction the database can serve from the
+ * matching (resource, startsAt, finishesAt) index.
+ */
+class AppointmentRepositoryImpl implements AppointmentRepositoryCustom {
+
+    private static final int FETCH_SIZE = 500;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Appointment> findFiltered(AppointmentFilter filter, long afterId, int limit){
+        return query(filter, afterId).setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public Stream<Appointment> streamFiltered(AppointmentFilter filter){
+        return query(filter, null)
+                .setHint(QueryHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .setHint(QueryHints.HINT_READONLY, true)
+                .getResultStream();
+    }
+
+    private TypedQuery<Appointment> query(AppointmentFilter filter, Long afterId){
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Appointment> cq = cb.createQuery(Appointment.class);
+        Root<Appointment> a = cq.from(Appointment.class);
+        a.fetch("patient", JoinType.LEFT);
+        a.fetch("doctor", JoinType.LEFT);
+        a.fetch("room", JoinType.LEFT);
+
+        List<Predicate> where = new ArrayList<>();
+        if (afterId != null){
+            where.add(cb.greaterThan(a.<Long>get("id"), afterId));
+        }
+        if (filter.getDoctorId() != null){
+            where.add(cb.equal(a.get("doctor").get("id"), filter.getDoctorId()));
+        }
+        if (filter.getPatientId() != null){
+            where.add(cb.equal(a.get("patient").get("id"), filter.getPatientId()));
+        }
+        if (filter.getRoom() != null){
+            where.add(cb.equal(a.get("room").get("roomName"), filter.getRoom()));
+        }
+        if (filter.getTo() != null){
+            where.add(cb.lessThan(a.get("startsAt"), filter.getTo()));
+        }
+        if (filter.getFrom() != null){
+            where.add(cb.greaterThan(a.get("finishesAt"), filter.getFrom()));
+        }
+
+        cq.select(a).where(where.toArray(new Predicate[0])).orderBy(cb.asc(a.get("id")));
+        return entityManager.createQuery(cq);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.demo.repositories;
+
+import java.util.Optional;
+
+import javax.persistence.LockModeType;
+
+import com.example.demo.entities.ChangeSequence;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface ChangeSequenceRepository extends JpaRepository<ChangeSequence, String> {
+    // SELECT ... FOR UPDATE on the sequence row, held until the surrounding transaction ends
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from ChangeSequence s where s.name = :name")
+    Optional<ChangeSequence> findByNameForUpdate(@Param("name") String name);
+}
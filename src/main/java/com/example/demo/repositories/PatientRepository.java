@@ -2,13 +2,35 @@
 package com.example.demo.repositories;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
 
 import com.example.demo.entities.Patient;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
 public interface PatientRepository extends JpaRepository<Patient, Long> {
     List<Patient> findAll();
+    // Keyset page: the rows after the given key in key order
+    List<Patient> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
     Patient save(Patient doc);
     void delete(Patient doc);
+
+    // Every patient in id order, fetched in chunks while the caller consumes them
+    @QueryHints({@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true")})
+    @Query("select p from Patient p order by p.id")
+    Stream<Patient> streamAll();
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select p from Patient p where p.id = :id")
+    Optional<Patient> findByIdForUpdate(@Param("id") long id);
 }
@@ -4,14 +4,39 @@ package com.example.demo.repositories;
 import java.util.List;
 import java.util.Optional;
 
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+
 import com.example.demo.entities.Room;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface RoomRepository extends JpaRepository<Room, Long> {
+public interface RoomRepository extends JpaRepository<Room, String> {
     List<Room> findAll();
+    // Keyset page: the rows after the given key in key order
+    List<Room> findByRoomNameGreaterThanOrderByRoomNameAsc(String roomName, Pageable pageable);
+    // Cached in the query cache when the second-level cache is on
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_CACHEABLE, value = "true"))
     Optional<Room> findByRoomName(String roomName);
     Room save(Room room);
     void delete(Room room);
+    // Derived deletes load and remove the rows, which needs a transaction of their own
+    @Transactional
     void deleteByRoomName(String roomName);
+
+    // SELECT ... FOR UPDATE on the room row, held until the surrounding transaction ends
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from Room r where r.roomName = :roomName")
+    Optional<Room> findByRoomNameForUpdate(@Param("roomName") String roomName);
+
+    // The same on every room row in key order, waiting out the bookings in progress in any room
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from Room r order by r.roomName")
+    List<Room> findAllForUpdate();
 }
@@ -0,0 +1,113 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.demo.booking.BookingCoordinator;
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:batch")
+@AutoConfigureMockMvc
+class AppointmentBatchIntegrationTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2023, 4, 24, 8, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private BookingCoordinator bookingCoordinator;
+
+    @AfterEach
+    void tearDown(){
+        bookingCoordinator.cancelAll();
+    }
+
+    @Test
+    void should_import_a_schedule_and_reject_it_the_second_time() throws Exception {
+        roomRepository.save(new Room("Room 0"));
+
+        // Four rooms, fifty back to back half hour slots each, plus one clash per room
+        List<Appointment> schedule = new ArrayList<>();
+        for (int r = 0; r < 4; r++){
+            Room room = new Room("Room " + r);
+            for (int slot = 0; slot < 50; slot++){
+                LocalDateTime startsAt = DAY.plusMinutes(30L * slot);
+                schedule.add(new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                        new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"), room, startsAt, startsAt.plusMinutes(30)));
+            }
+            schedule.add(new Appointment(new Patient("Paulino", "Antunez", 37, "p.antunez@email.com"),
+                    new Doctor("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe"), room, DAY.plusMinutes(15), DAY.plusMinutes(45)));
+        }
+        String payload = objectMapper.writeValueAsString(schedule);
+
+        mockMvc.perform(post("/api/appointments/batch").contentType(MediaType.APPLICATION_JSON).content(payload))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted.length()").value(200))
+                .andExpect(jsonPath("$.rejected.length()").value(4))
+                .andExpect(jsonPath("$.rejected[0].index").value(50))
+                .andExpect(jsonPath("$.rejected[0].reason").value("overlaps appointment 0 of this batch"));
+
+        assertThat(appointmentRepository.count()).isEqualTo(200);
+        assertThat(roomRepository.findAll()).hasSize(4);
+
+        mockMvc.perform(post("/api/appointments/batch").contentType(MediaType.APPLICATION_JSON).content(payload))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted.length()").value(0))
+                .andExpect(jsonPath("$.rejected.length()").value(204));
+
+        assertThat(appointmentRepository.count()).isEqualTo(200);
+    }
+
+    @Test
+    void should_not_overwrite_a_booked_appointment_named_by_id() throws Exception {
+        Room room = new Room("Room 0");
+        List<Appointment> schedule = new ArrayList<>();
+        schedule.add(new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"), room, DAY, DAY.plusMinutes(30)));
+        mockMvc.perform(post("/api/appointments/batch").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(schedule)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted.length()").value(1));
+        Appointment booked = appointmentRepository.findAll().get(0);
+
+        // Same id, another time: merged by saveAll it would move the booked appointment
+        Appointment moved = new Appointment(new Patient("Paulino", "Antunez", 37, "p.antunez@email.com"),
+                new Doctor("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe"), room, DAY.plusHours(2), DAY.plusHours(3));
+        moved.setId(booked.getId());
+        List<Appointment> batch = new ArrayList<>();
+        batch.add(moved);
+        mockMvc.perform(post("/api/appointments/batch").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted.length()").value(0))
+                .andExpect(jsonPath("$.rejected[0].reason").value("id must not be set"));
+
+        assertThat(appointmentRepository.findAll()).hasSize(1);
+        assertThat(appointmentRepository.findById(booked.getId()).get().getStartsAt()).isEqualTo(DAY);
+    }
+}
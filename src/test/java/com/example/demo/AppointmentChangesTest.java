@@ -0,0 +1,313 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.booking.AppointmentChangeLog;
+import com.example.demo.booking.BookingCoordinator;
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:changes")
+@AutoConfigureMockMvc
+class AppointmentChangesTest {
+
+    private static final LocalDateTime NINE = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AppointmentChangeLog changeLog;
+
+    @Autowired
+    private BookingCoordinator bookingCoordinator;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @AfterEach
+    void tearDown(){
+        bookingCoordinator.cancelAll();
+        patientRepository.deleteAll();
+        doctorRepository.deleteAll();
+        roomRepository.deleteAll();
+    }
+
+    @Test
+    void should_send_created_appointments_and_tombstones_since_a_version() throws Exception {
+        long start = changeLog.currentVersion();
+        long first = book("Dermatology", NINE);
+        long second = book("Dermatology", NINE.plusHours(1));
+
+        JsonNode created = changes(start);
+        assertThat(created.get("more").asBoolean()).isFalse();
+        assertThat(created.get("changes")).hasSize(2);
+        assertThat(created.get("changes").get(0).get("type").asText()).isEqualTo("CREATED");
+        assertThat(created.get("changes").get(0).get("appointmentId").asLong()).isEqualTo(first);
+        assertThat(created.get("changes").get(0).get("appointment").get("room").get("roomName").asText()).isEqualTo("Dermatology");
+
+        long synced = created.get("version").asLong();
+        mockMvc.perform(delete("/api/appointments/" + first)).andExpect(status().isOk());
+
+        JsonNode deleted = changes(synced);
+        assertThat(deleted.get("changes")).hasSize(1);
+        assertThat(deleted.get("changes").get(0).get("type").asText()).isEqualTo("DELETED");
+        assertThat(deleted.get("changes").get(0).get("appointmentId").asLong()).isEqualTo(first);
+        assertThat(deleted.get("changes").get(0).get("appointment").isNull()).isTrue();
+
+        // Created and deleted since the version, only the tombstone is left
+        JsonNode folded = changes(start);
+        assertThat(folded.get("changes")).hasSize(2);
+        assertThat(folded.get("changes").get(0).get("appointmentId").asLong()).isEqualTo(second);
+        assertThat(folded.get("changes").get(1).get("type").asText()).isEqualTo("DELETED");
+
+        assertThat(changes(deleted.get("version").asLong()).get("changes")).isEmpty();
+    }
+
+    @Test
+    void should_start_over_from_a_cleared_change() throws Exception {
+        long start = changeLog.currentVersion();
+        book("Dermatology", NINE);
+        mockMvc.perform(delete("/api/appointments")).andExpect(status().isOk());
+        long after = book("Dermatology", NINE);
+
+        JsonNode feed = changes(start);
+        assertThat(feed.get("changes")).hasSize(2);
+        assertThat(feed.get("changes").get(0).get("type").asText()).isEqualTo("CLEARED");
+        assertThat(feed.get("changes").get(1).get("appointmentId").asLong()).isEqualTo(after);
+    }
+
+    @Test
+    void should_page_through_the_log() throws Exception {
+        long start = changeLog.currentVersion();
+        for (int i = 0; i < 5; i++){
+            book("Dermatology", NINE.plusHours(i));
+        }
+
+        String page = mockMvc.perform(get("/api/appointments/changes").param("since", String.valueOf(start)).param("limit", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.more").value(true))
+                .andExpect(jsonPath("$.changes.length()").value(3))
+                .andReturn().getResponse().getContentAsString();
+        long next = objectMapper.readTree(page).get("version").asLong();
+
+        mockMvc.perform(get("/api/appointments/changes").param("since", String.valueOf(next)).param("limit", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.more").value(false))
+                .andExpect(jsonPath("$.changes.length()").value(2));
+    }
+
+    @Test
+    void should_reject_versions_the_log_does_not_know() throws Exception {
+        long ahead = changeLog.currentVersion() + 1;
+        mockMvc.perform(get("/api/appointments/changes").param("since", String.valueOf(ahead))).andExpect(status().isGone());
+        mockMvc.perform(get("/api/appointments/changes").param("since", "-1")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/appointments/changes").param("limit", "0")).andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void should_hold_back_changes_behind_a_write_still_in_flight() throws Exception {
+        long start = changeLog.currentVersion();
+        Patient patient = patientRepository.save(new Patient("Paulino", "Antunez", 37, "p.antunez@email.com"));
+        Doctor doctor = doctorRepository.save(new Doctor ("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe"));
+        Room room = roomRepository.save(new Room("Oncology"));
+        CountDownLatch recorded = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+
+        // Takes the lower version and commits after the booking below
+        ExecutorService slow = Executors.newSingleThreadExecutor();
+        Future<Long> inFlight = slow.submit(() -> new TransactionTemplate(transactionManager).execute(status -> {
+            Appointment appointment = appointmentRepository.save(new Appointment(patient, doctor, room, NINE, NINE.plusHours(1)));
+            changeLog.record(AppointmentChange.Type.CREATED, appointment.getId());
+            recorded.countDown();
+            await(commit);
+            return appointment.getId();
+        }));
+        try {
+            assertThat(recorded.await(10, TimeUnit.SECONDS)).isTrue();
+            long later = book("Dermatology", NINE);
+
+            JsonNode held = changes(start);
+            assertThat(held.get("changes")).isEmpty();
+            assertThat(held.get("version").asLong()).isEqualTo(start);
+
+            commit.countDown();
+            long first = inFlight.get(10, TimeUnit.SECONDS);
+
+            JsonNode feed = changes(start);
+            assertThat(feed.get("changes")).hasSize(2);
+            assertThat(feed.get("changes").get(0).get("appointmentId").asLong()).isEqualTo(first);
+            assertThat(feed.get("changes").get(1).get("appointmentId").asLong()).isEqualTo(later);
+        } finally {
+            commit.countDown();
+            slow.shutdown();
+        }
+    }
+
+    @Test
+    void should_answer_gone_behind_the_pruned_changes() throws Exception {
+        long start = changeLog.currentVersion();
+        book("Dermatology", NINE);
+        book("Dermatology", NINE.plusHours(1));
+
+        assertThat(changeLog.pruneBefore(LocalDateTime.now().plusMinutes(1))).isGreaterThanOrEqualTo(2);
+
+        long pruned = changeLog.prunedVersion();
+        assertThat(pruned).isEqualTo(changeLog.currentVersion());
+        mockMvc.perform(get("/api/appointments/changes").param("since", String.valueOf(start))).andExpect(status().isGone());
+        assertThat(changes(pruned).get("changes")).isEmpty();
+
+        long later = book("Dermatology", NINE.plusHours(2));
+        assertThat(changes(pruned).get("changes").get(0).get("appointmentId").asLong()).isEqualTo(later);
+    }
+
+    private static void await(CountDownLatch latch){
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private long book(String roomName, LocalDateTime startsAt) throws Exception {
+        Appointment appointment = new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe"), new Room(roomName), startsAt, startsAt.plusHours(1));
+        String body = mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("id").asLong();
+    }
+
+    private JsonNode changes(long since) throws Exception {
+        String body = mockMvc.perform(get("/api/appointments/changes").param("since", String.valueOf(since)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+}
+
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:changes-database;LOCK_TIMEOUT=10000", "booking.lock-mode=database"})
+@AutoConfigureMockMvc
+class AppointmentChangesDatabaseLockTest {
+
+    private static final LocalDateTime NINE = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AppointmentChangeLog changeLog;
+
+    @Autowired
+    private BookingCoordinator bookingCoordinator;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @AfterEach
+    void tearDown(){
+        bookingCoordinator.cancelAll();
+    }
+
+    @Test
+    void should_commit_versions_in_order() throws Exception {
+        long start = changeLog.currentVersion();
+        Patient patient = patientRepository.save(new Patient("Paulino", "Antunez", 37, "p.antunez@email.com"));
+        Doctor doctor = doctorRepository.save(new Doctor ("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe"));
+        Room room = roomRepository.save(new Room("Oncology"));
+        CountDownLatch recorded = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        Future<Long> first = threads.submit(() -> new TransactionTemplate(transactionManager).execute(status -> {
+            Appointment appointment = appointmentRepository.save(new Appointment(patient, doctor, room, NINE, NINE.plusHours(1)));
+            changeLog.record(AppointmentChange.Type.CREATED, appointment.getId());
+            recorded.countDown();
+            try {
+                commit.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+            return appointment.getId();
+        }));
+        try {
+            assertThat(recorded.await(10, TimeUnit.SECONDS)).isTrue();
+            Appointment appointment = new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                    new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe"), new Room("Dermatology"), NINE, NINE.plusHours(1));
+            Future<String> second = threads.submit(() -> mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(appointment)))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString());
+
+            // Waits for the first write to commit before it can take a version
+            Thread.sleep(300);
+            assertThat(second.isDone()).isFalse();
+            commit.countDown();
+            long firstId = first.get(10, TimeUnit.SECONDS);
+            long secondId = objectMapper.readTree(second.get(10, TimeUnit.SECONDS)).get("id").asLong();
+
+            String body = mockMvc.perform(get("/api/appointments/changes").param("since", String.valueOf(start)))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            JsonNode feed = objectMapper.readTree(body);
+            assertThat(feed.get("changes")).hasSize(2);
+            assertThat(feed.get("changes").get(0).get("appointmentId").asLong()).isEqualTo(firstId);
+            assertThat(feed.get("changes").get(1).get("appointmentId").asLong()).isEqualTo(secondId);
+        } finally {
+            commit.countDown();
+            threads.shutdown();
+        }
+    }
+}
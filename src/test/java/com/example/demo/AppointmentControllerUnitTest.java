@@ -1,7 +1,13 @@
 package com.example.demo;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -18,32 +24,82 @@ import java.util.Optional;
 import java.time.LocalDateTime;
 import java.time.format.*;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 
+import com.example.demo.booking.AppointmentChangeLog;
+import com.example.demo.booking.AppointmentIndex;
+import com.example.demo.booking.AppointmentReference;
+import com.example.demo.booking.BookingCoordinator;
+import com.example.demo.booking.QueryConflictDetector;
+import com.example.demo.booking.RoomAvailability;
+import com.example.demo.booking.SlotFinder;
+import com.example.demo.booking.SuggestionRequest;
+import com.example.demo.cache.EntityReadCache;
+import com.example.demo.cache.TableVersions;
 import com.example.demo.controllers.AppointmentController;
+import com.example.demo.controllers.AppointmentEventHub;
+import com.example.demo.controllers.JsonStreams;
 import com.example.demo.repositories.*;
 import com.example.demo.entities.*;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 @WebMvcTest(AppointmentController.class)
+@Import({AppointmentIndex.class, BookingCoordinator.class, SlotFinder.class, RoomAvailability.class, EntityReadCache.class, TableVersions.class})
+@TestPropertySource(properties = "booking.conflict-detection=index")
 class AppointmentControllerUnitTest{
 
     @MockBean
     private AppointmentRepository appointmentRepository;
 
+    @MockBean
+    private RoomRepository roomRepository;
+
+    @MockBean
+    private DoctorRepository doctorRepository;
+
+    @MockBean
+    private PatientRepository patientRepository;
+
+    @MockBean
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private JsonStreams jsonStreams;
+
+    @MockBean
+    private AppointmentChangeLog changeLog;
+
+    @MockBean
+    private AppointmentEventHub eventHub;
+
     @Autowired 
     private MockMvc mockMvc;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private AppointmentIndex appointmentIndex;
+
+    @BeforeEach
+    void setUp(){
+        // The index outlives a single test, start every test from an empty table
+        appointmentIndex.clear();
+        when(appointmentRepository.save(any(Appointment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
     @Test
     void shouldCreateAppointment() throws Exception {
         
@@ -158,11 +214,119 @@ class AppointmentControllerUnitTest{
 
     }
     
+    @Test
+    void shouldNotCreateAppointmentInsideAnotherOne() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Doctor doctor2 = new Doctor ("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        Appointment outer = new Appointment(patient, doctor, room,
+                LocalDateTime.parse("18:00 24/04/2023", formatter), LocalDateTime.parse("21:00 24/04/2023", formatter));
+        Appointment inner = new Appointment(patient2, doctor2, room,
+                LocalDateTime.parse("19:00 24/04/2023", formatter), LocalDateTime.parse("20:00 24/04/2023", formatter));
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(outer)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(inner)))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    void shouldCreateAppointmentAgainAfterDeletingTheConflictingOne() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        Appointment appointment = new Appointment(patient, doctor, room,
+                LocalDateTime.parse("19:00 24/04/2023", formatter), LocalDateTime.parse("20:00 24/04/2023", formatter));
+        appointment.setId(7);
+
+        appointmentIndex.add(appointment);
+        when(appointmentRepository.findById(appointment.getId())).thenReturn(Optional.of(appointment));
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isNotAcceptable());
+
+        mockMvc.perform(delete("/api/appointments/" + appointment.getId()))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void shouldNotBookADoctorInTwoRoomsAtOnce() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        patient.setId(1);
+        patient2.setId(2);
+        doctor.setId(1);
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime startsAt= LocalDateTime.parse("19:00 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:00 24/04/2023", formatter);
+
+        Appointment appointment = new Appointment(patient, doctor, new Room("Dermatology"), startsAt, finishesAt);
+        Appointment appointment2 = new Appointment(patient2, doctor, new Room("Oncology"), startsAt.plusMinutes(30), finishesAt.plusMinutes(30));
+        Appointment appointment3 = new Appointment(patient2, doctor, new Room("Oncology"), finishesAt, finishesAt.plusHours(1));
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment2)))
+                .andExpect(status().isNotAcceptable());
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment3)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void shouldNotBookAPatientInTwoRoomsAtOnce() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Doctor doctor2 = new Doctor ("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe");
+        patient.setId(1);
+        doctor.setId(1);
+        doctor2.setId(2);
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime startsAt= LocalDateTime.parse("19:00 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:00 24/04/2023", formatter);
+
+        Appointment appointment = new Appointment(patient, doctor, new Room("Dermatology"), startsAt, finishesAt);
+        Appointment appointment2 = new Appointment(patient, doctor2, new Room("Oncology"), startsAt.minusMinutes(30), finishesAt.plusMinutes(30));
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment2)))
+                .andExpect(status().isNotAcceptable());
+    }
+
     @Test
     void shouldGetNoAppointments() throws Exception{
         List<Appointment> appointments = new ArrayList<Appointment>();
         when(appointmentRepository.findAll()).thenReturn(appointments);
-        mockMvc.perform(get("/api/appointments"))
+        mockMvc.perform(get("/api/appointments").param("unpaged", "true"))
                 .andExpect(status().isNoContent());
                 
     }
@@ -191,11 +355,105 @@ class AppointmentControllerUnitTest{
         appointments.add(appointment2);
 
         when(appointmentRepository.findAll()).thenReturn(appointments);
-        mockMvc.perform(get("/api/appointments"))
+        mockMvc.perform(get("/api/appointments").param("unpaged", "true"))
                 .andExpect(status().isOk());
                 
     }
 
+    @Test
+    void shouldPassTheFiltersToTheRepository() throws Exception{
+        Appointment appointment = new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe"), new Room("Dermatology"),
+                LocalDateTime.of(2023, 4, 24, 19, 0), LocalDateTime.of(2023, 4, 24, 20, 0));
+        appointment.setId(7);
+        when(appointmentRepository.findFiltered(any(AppointmentFilter.class), eq(0L), eq(101))).thenReturn(Collections.singletonList(appointment));
+
+        mockMvc.perform(get("/api/appointments").param("doctorId", "3").param("room", "Dermatology")
+                .param("from", "08:00 24/04/2023").param("to", "20:00 24/04/2023"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(7));
+
+        verify(appointmentRepository).findFiltered(argThat(filter -> filter.getDoctorId() == 3L && filter.getPatientId() == null
+                && "Dermatology".equals(filter.getRoom()) && filter.getFrom().equals(LocalDateTime.of(2023, 4, 24, 8, 0))
+                && filter.getTo().equals(LocalDateTime.of(2023, 4, 24, 20, 0))), eq(0L), eq(101));
+        verify(appointmentRepository, never()).findByIdGreaterThanOrderByIdAsc(anyLong(), any());
+    }
+
+    @Test
+    void shouldRejectAnEmptyOrMalformedWindow() throws Exception{
+        mockMvc.perform(get("/api/appointments").param("from", "20:00 24/04/2023").param("to", "20:00 24/04/2023"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/appointments").param("from", "2023-04-24T20:00"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldWriteReferencesByIdAndOnlyTheRequestedFields() throws Exception{
+        when(appointmentRepository.findAll()).thenReturn(sameDoctorAllDay());
+
+        mockMvc.perform(get("/api/appointments").param("unpaged", "true").param("expand", "none"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[0].patientId").value(11))
+                .andExpect(jsonPath("$[0].doctorId").value(5))
+                .andExpect(jsonPath("$[0].roomName").value("Dermatology"))
+                .andExpect(jsonPath("$[0].startsAt").value("09:00 24/04/2023"))
+                .andExpect(jsonPath("$[0].doctor").doesNotExist());
+
+        mockMvc.perform(get("/api/appointments").param("unpaged", "true").param("fields", "id,startsAt,doctor"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[2].id").value(3))
+                .andExpect(jsonPath("$[2].startsAt").value("11:00 24/04/2023"))
+                .andExpect(jsonPath("$[2].doctor.firstName").value("Perla"))
+                .andExpect(jsonPath("$[2].patient").doesNotExist())
+                .andExpect(jsonPath("$[2].finishesAt").doesNotExist());
+    }
+
+    @Test
+    void shouldSideLoadEachReferencedEntityOnce() throws Exception{
+        when(appointmentRepository.findByIdGreaterThanOrderByIdAsc(eq(0L), any())).thenReturn(sameDoctorAllDay());
+
+        mockMvc.perform(get("/api/appointments").param("expand", "included").param("fields", "id,patientId,doctorId"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.length()").value(3))
+                .andExpect(jsonPath("$.data[1].patientId").value(12))
+                .andExpect(jsonPath("$.data[1].roomName").doesNotExist())
+                .andExpect(jsonPath("$.included.doctors.length()").value(1))
+                .andExpect(jsonPath("$.included.doctors[0].id").value(5))
+                .andExpect(jsonPath("$.included.patients.length()").value(2))
+                .andExpect(jsonPath("$.included.rooms").doesNotExist());
+    }
+
+    @Test
+    void shouldRejectUnknownFieldsAndExpansions() throws Exception{
+        mockMvc.perform(get("/api/appointments").param("fields", "id,nurse"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/appointments").param("expand", "some"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/appointments").param("stream", "true").param("expand", "included"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // One doctor and room for the day, two patients
+    private static List<Appointment> sameDoctorAllDay(){
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        doctor.setId(5);
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        patient.setId(11);
+        Patient patient2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        patient2.setId(12);
+        Room room = new Room("Dermatology");
+        List<Appointment> appointments = new ArrayList<>();
+        for (int i = 0; i < 3; i++){
+            LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9 + i, 0);
+            Appointment appointment = new Appointment(i % 2 == 0 ? patient : patient2, doctor, room, startsAt, startsAt.plusHours(1));
+            appointment.setId(i + 1);
+            appointments.add(appointment);
+        }
+        return appointments;
+    }
+
     @Test
     void shouldGetAppointmentById() throws Exception{
         Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
@@ -276,3 +534,341 @@ class AppointmentControllerUnitTest{
     }
 }
 
+@WebMvcTest(AppointmentController.class)
+@Import({QueryConflictDetector.class, BookingCoordinator.class, SlotFinder.class, RoomAvailability.class, EntityReadCache.class, TableVersions.class})
+class AppointmentControllerQueryUnitTest{
+
+    @MockBean
+    private AppointmentRepository appointmentRepository;
+
+    @MockBean
+    private RoomRepository roomRepository;
+
+    @MockBean
+    private DoctorRepository doctorRepository;
+
+    @MockBean
+    private PatientRepository patientRepository;
+
+    @MockBean
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private JsonStreams jsonStreams;
+
+    @MockBean
+    private AppointmentChangeLog changeLog;
+
+    @MockBean
+    private AppointmentEventHub eventHub;
+
+    @Autowired 
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp(){
+        when(appointmentRepository.save(any(Appointment.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void shouldCreateAppointmentWhenRangeQueryFindsNothing() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+        
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        Appointment appointment = new Appointment(patient, doctor, room, startsAt, finishesAt);
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isOk());
+
+        // Patient and doctor are not stored yet, so only the room is looked up
+        verify(appointmentRepository).findConflictingResources("Dermatology", null, null, startsAt, finishesAt);
+        verify(appointmentRepository, never()).findAll();
+    }
+
+    @Test
+    void shouldNotCreateAppointmentWhenRangeQueryFindsOne() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Doctor doctor2 = new Doctor ("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+        
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        Appointment existing = new Appointment(patient, doctor, room, startsAt, finishesAt);
+        Appointment appointment = new Appointment(patient2, doctor2, room, startsAt, finishesAt);
+
+        when(appointmentRepository.findConflictingResources("Dermatology", null, null, startsAt, finishesAt))
+                .thenReturn(Collections.singletonList("ROOM"));
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    void shouldReportAcceptedAndRejectedAppointmentsOfABatch() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+        Room room2 = new Room("Oncology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime nine = LocalDateTime.parse("09:00 24/04/2023", formatter);
+        LocalDateTime ten = LocalDateTime.parse("10:00 24/04/2023", formatter);
+
+        Appointment existing = new Appointment(patient, doctor, room2, nine, ten);
+        existing.setId(42);
+
+        List<Appointment> batch = Arrays.asList(
+                new Appointment(patient, doctor, room, nine, ten),
+                new Appointment(patient, doctor, room, nine.plusMinutes(30), ten.plusMinutes(30)),
+                new Appointment(patient, doctor, room, ten, nine),
+                new Appointment(patient, doctor, room2, nine, ten));
+
+        when(roomRepository.save(any(Room.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(appointmentRepository.findOverlapping("Oncology", nine, ten)).thenReturn(Collections.singletonList(existing));
+
+        mockMvc.perform(post("/api/appointments/batch").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted.length()").value(1))
+                .andExpect(jsonPath("$.accepted[0].index").value(0))
+                .andExpect(jsonPath("$.accepted[0].appointment.room.roomName").value("Dermatology"))
+                .andExpect(jsonPath("$.rejected.length()").value(3))
+                .andExpect(jsonPath("$.rejected[0].index").value(2))
+                .andExpect(jsonPath("$.rejected[0].reason").value("startsAt must be before finishesAt"))
+                .andExpect(jsonPath("$.rejected[1].index").value(1))
+                .andExpect(jsonPath("$.rejected[1].reason").value("overlaps appointment 0 of this batch"))
+                .andExpect(jsonPath("$.rejected[2].index").value(3))
+                .andExpect(jsonPath("$.rejected[2].reason").value("overlaps appointment 42"));
+    }
+
+    @Test
+    void shouldRejectBatchEntriesThatDoubleBookADoctorOrPatient() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Doctor doctor2 = new Doctor ("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe");
+        patient.setId(1);
+        patient2.setId(2);
+        doctor.setId(1);
+        doctor2.setId(2);
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime nine = LocalDateTime.parse("09:00 24/04/2023", formatter);
+        LocalDateTime ten = LocalDateTime.parse("10:00 24/04/2023", formatter);
+
+        List<Appointment> batch = Arrays.asList(
+                new Appointment(patient, doctor, new Room("Dermatology"), nine, ten),
+                new Appointment(patient2, doctor, new Room("Oncology"), nine, ten),
+                new Appointment(patient2, doctor2, new Room("Oncology"), ten, ten.plusHours(1)));
+
+        when(roomRepository.save(any(Room.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(appointmentRepository.findConflictingResources("Oncology", 2L, 2L, ten, ten.plusHours(1)))
+                .thenReturn(Collections.singletonList("PATIENT"));
+
+        mockMvc.perform(post("/api/appointments/batch").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted.length()").value(1))
+                .andExpect(jsonPath("$.accepted[0].index").value(0))
+                .andExpect(jsonPath("$.rejected.length()").value(2))
+                .andExpect(jsonPath("$.rejected[0].index").value(1))
+                .andExpect(jsonPath("$.rejected[0].reason").value("doctor booked by appointment 0 of this batch"))
+                .andExpect(jsonPath("$.rejected[1].index").value(2))
+                .andExpect(jsonPath("$.rejected[1].reason").value("patient already booked at that time"));
+    }
+
+    @Test
+    void shouldNotBookAnAppointmentLongerThanADay() throws Exception {
+        LocalDateTime nine = LocalDateTime.of(2023, 4, 24, 9, 0);
+        AppointmentReference request = new AppointmentReference(0, 1L, 1L, "Dermatology", nine, nine.plus(Appointment.MAX_DURATION).plusMinutes(1));
+
+        mockMvc.perform(post("/api/appointments").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+
+        List<Appointment> batch = Collections.singletonList(
+                new Appointment(new Patient(), new Doctor(), new Room("Dermatology"), nine, nine.plusHours(25)));
+        mockMvc.perform(post("/api/appointments/batch").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rejected[0].reason").value("lasts longer than 24 hours"));
+    }
+
+    @Test
+    void shouldRejectTheEntriesOfARoomWhoseTransactionFails() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        patient.setId(1);
+        doctor.setId(1);
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime nine = LocalDateTime.parse("09:00 24/04/2023", formatter);
+        LocalDateTime ten = LocalDateTime.parse("10:00 24/04/2023", formatter);
+
+        // Cardiology is booked first and fails, Dermatology then gets the doctor and the patient back
+        List<Appointment> batch = Arrays.asList(
+                new Appointment(patient, doctor, new Room("Dermatology"), nine, ten),
+                new Appointment(patient, doctor, new Room("Cardiology"), nine, ten));
+
+        when(roomRepository.save(any(Room.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(appointmentRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Appointment> saved = invocation.getArgument(0);
+            if (!saved.isEmpty() && saved.get(0).getRoom().getRoomName().equals("Cardiology")){
+                throw new QueryTimeoutException("timed out");
+            }
+            return saved;
+        });
+
+        mockMvc.perform(post("/api/appointments/batch").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted.length()").value(1))
+                .andExpect(jsonPath("$.accepted[0].index").value(0))
+                .andExpect(jsonPath("$.rejected.length()").value(1))
+                .andExpect(jsonPath("$.rejected[0].index").value(1))
+                .andExpect(jsonPath("$.rejected[0].reason").value("could not be booked, try again"));
+    }
+
+    @Test
+    void shouldSuggestTheEarliestSlotsWhereEveryoneIsFree() throws Exception {
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+        Room room2 = new Room("Oncology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime nine = LocalDateTime.parse("09:00 24/04/2023", formatter);
+
+        // Doctor busy until 10:00, patient until 10:30, Dermatology from 10:30 to 11:00
+        when(doctorRepository.existsById(1L)).thenReturn(true);
+        when(patientRepository.existsById(2L)).thenReturn(true);
+        when(roomRepository.findByRoomName("Dermatology")).thenReturn(Optional.of(room));
+        when(roomRepository.findByRoomName("Oncology")).thenReturn(Optional.of(room2));
+        when(appointmentRepository.findOverlappingForDoctor(eq(1L), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(Collections.singletonList(new Appointment(new Patient(), doctor, room2, nine, nine.plusHours(1))));
+        when(appointmentRepository.findOverlappingForPatient(eq(2L), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(Collections.singletonList(new Appointment(patient, new Doctor(), room2, nine.plusHours(1), nine.plusMinutes(90))));
+        when(appointmentRepository.findOverlapping(eq("Dermatology"), any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(Collections.singletonList(new Appointment(new Patient(), new Doctor(), room, nine.plusMinutes(90), nine.plusHours(2))));
+
+        SuggestionRequest request = new SuggestionRequest();
+        request.setDoctorId(1L);
+        request.setPatientId(2L);
+        request.setRooms(Arrays.asList("Oncology", "Dermatology"));
+        request.setDuration(30);
+        request.setFrom(nine);
+        request.setTo(nine.plusHours(4));
+        request.setLimit(3);
+
+        mockMvc.perform(post("/api/appointments/suggest").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].startsAt").value("10:30 24/04/2023"))
+                .andExpect(jsonPath("$[0].roomName").value("Oncology"))
+                .andExpect(jsonPath("$[1].startsAt").value("11:00 24/04/2023"))
+                .andExpect(jsonPath("$[1].roomName").value("Dermatology"))
+                .andExpect(jsonPath("$[2].startsAt").value("11:30 24/04/2023"))
+                .andExpect(jsonPath("$[2].finishesAt").value("12:00 24/04/2023"))
+                .andExpect(jsonPath("$[2].roomName").value("Dermatology"));
+    }
+
+    @Test
+    void shouldNotSuggestAnythingWithoutRooms() throws Exception {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime nine = LocalDateTime.parse("09:00 24/04/2023", formatter);
+
+        SuggestionRequest request = new SuggestionRequest();
+        request.setDoctorId(1L);
+        request.setPatientId(2L);
+        request.setDuration(30);
+        request.setFrom(nine);
+        request.setTo(nine.plusHours(4));
+
+        // No rooms asked for and none stored
+        when(doctorRepository.existsById(1L)).thenReturn(true);
+        when(patientRepository.existsById(2L)).thenReturn(true);
+        when(roomRepository.findAll()).thenReturn(Collections.emptyList());
+        mockMvc.perform(post("/api/appointments/suggest").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isNoContent());
+
+        verify(appointmentRepository, never()).findOverlappingForDoctor(anyLong(), any(LocalDateTime.class), any(LocalDateTime.class));
+    }
+
+    @Test
+    void shouldNotSuggestForAnUnknownDoctorOrAnEmptyWindow() throws Exception {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime nine = LocalDateTime.parse("09:00 24/04/2023", formatter);
+
+        SuggestionRequest request = new SuggestionRequest();
+        request.setDoctorId(1L);
+        request.setPatientId(2L);
+        request.setDuration(30);
+        request.setFrom(nine);
+        request.setTo(nine.plusHours(4));
+
+        when(patientRepository.existsById(2L)).thenReturn(true);
+        mockMvc.perform(post("/api/appointments/suggest").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isNotFound());
+
+        request.setTo(nine);
+        mockMvc.perform(post("/api/appointments/suggest").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+
+        verify(appointmentRepository, never()).findOverlappingForDoctor(anyLong(), any(LocalDateTime.class), any(LocalDateTime.class));
+    }
+
+    @Test
+    void shouldNotSuggestTooManySlotsOrOverTooWideAWindow() throws Exception {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        LocalDateTime nine = LocalDateTime.parse("09:00 24/04/2023", formatter);
+
+        SuggestionRequest request = new SuggestionRequest();
+        request.setDoctorId(1L);
+        request.setPatientId(2L);
+        request.setDuration(30);
+        request.setFrom(nine);
+        request.setTo(nine.plusDays(31));
+        request.setLimit(51);
+
+        when(doctorRepository.existsById(1L)).thenReturn(true);
+        when(patientRepository.existsById(2L)).thenReturn(true);
+        mockMvc.perform(post("/api/appointments/suggest").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+
+        request.setLimit(50);
+        request.setTo(nine.plusDays(31).plusMinutes(1));
+        mockMvc.perform(post("/api/appointments/suggest").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+
+        verify(appointmentRepository, never()).findOverlappingForDoctor(anyLong(), any(LocalDateTime.class), any(LocalDateTime.class));
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.demo.booking.AppointmentChangeLog;
+import com.example.demo.booking.BookingCoordinator;
+import com.example.demo.controllers.AppointmentEventHub;
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:sse", "sse.heartbeat-seconds=0"})
+@AutoConfigureMockMvc
+class AppointmentEventStreamTest {
+
+    private static final LocalDateTime NINE = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookingCoordinator bookingCoordinator;
+
+    @Autowired
+    private AppointmentEventHub eventHub;
+
+    @Autowired
+    private AppointmentChangeLog changeLog;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @AfterEach
+    void tearDown(){
+        bookingCoordinator.cancelAll();
+        patientRepository.deleteAll();
+        doctorRepository.deleteAll();
+        roomRepository.deleteAll();
+    }
+
+    @Test
+    void should_push_the_bookings_and_deletions_of_the_subscribed_room() throws Exception {
+        MockHttpServletResponse dermatology = subscribe("/api/appointments/stream?room=Dermatology");
+        MockHttpServletResponse everything = subscribe("/api/appointments/stream");
+
+        bookingCoordinator.book(appointment("Cardiology", doctorRepository.save(doctor())));
+        Appointment booked = bookingCoordinator.book(appointment("Dermatology", doctorRepository.save(doctor()))).get();
+        bookingCoordinator.cancel(booked);
+
+        // Sent under the version of the change, to catch up from with GET /api/appointments/changes
+        String events = awaitContent(dermatology, "event:deleted");
+        assertThat(events).contains("id:" + changeLog.currentVersion() + "\nevent:deleted");
+        assertThat(events).contains("event:created").contains("\"roomName\":\"Dermatology\"").doesNotContain("Cardiology");
+        assertThat(events.indexOf("event:created")).isLessThan(events.indexOf("event:deleted"));
+        assertThat(awaitContent(everything, "event:deleted")).contains("Cardiology").contains("Dermatology");
+    }
+
+    @Test
+    void should_filter_by_doctor_and_pass_cancel_all_to_everyone() throws Exception {
+        Doctor perla = doctorRepository.save(doctor());
+        Doctor other = doctorRepository.save(doctor());
+        MockHttpServletResponse response = subscribe("/api/appointments/stream?doctor=" + perla.getId());
+
+        bookingCoordinator.book(appointment("Cardiology", other));
+        bookingCoordinator.book(appointment("Dermatology", perla));
+        bookingCoordinator.cancelAll();
+
+        String events = awaitContent(response, "event:cleared");
+        assertThat(events).contains("\"roomName\":\"Dermatology\"").doesNotContain("Cardiology");
+    }
+
+    @Test
+    void should_book_by_reference_while_someone_listens() throws Exception {
+        Doctor perla = doctorRepository.save(doctor());
+        Patient patient = patientRepository.save(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        roomRepository.save(new Room("Dermatology"));
+        MockHttpServletResponse response = subscribe("/api/appointments/stream");
+
+        mockMvc.perform(post("/api/appointments").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"patientId\":" + patient.getId() + ",\"doctorId\":" + perla.getId()
+                        + ",\"roomName\":\"Dermatology\",\"startsAt\":\"09:00 24/04/2023\",\"finishesAt\":\"10:00 24/04/2023\"}"))
+                .andExpect(status().isOk());
+
+        String events = awaitContent(response, "event:created");
+        assertThat(events).contains("\"patientId\":" + patient.getId()).contains("\"doctorId\":" + perla.getId())
+                .contains("\"roomName\":\"Dermatology\"");
+        mockMvc.perform(get("/api/rooms/Dermatology/availability").param("from", "08:00 24/04/2023").param("to", "11:00 24/04/2023"))
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    @Test
+    void should_count_the_open_subscriptions() throws Exception {
+        int before = eventHub.subscribers();
+        subscribe("/api/appointments/stream?room=Dermatology");
+        assertThat(eventHub.subscribers()).isEqualTo(before + 1);
+    }
+
+    private MockHttpServletResponse subscribe(String uri) throws Exception {
+        return mockMvc.perform(get(uri).accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse();
+    }
+
+    private static String awaitContent(MockHttpServletResponse response, String expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        String content = response.getContentAsString();
+        while (!content.contains(expected) && System.nanoTime() < deadline){
+            Thread.sleep(10);
+            content = response.getContentAsString();
+        }
+        return content;
+    }
+
+    private Appointment appointment(String roomName, Doctor doctor){
+        return new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"), doctor, new Room(roomName), NINE, NINE.plusHours(1));
+    }
+
+    private static Doctor doctor(){
+        return new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+    }
+}
@@ -257,5 +257,131 @@ class AppointmentJpaUnitTest {
         Iterable appointments = repoAppointments.findAll();
         assertThat(appointments).isEmpty();
     }
+
+    @Test
+    void should_find_only_overlapping_appointments_of_the_same_room(){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room1 = new Room("Dermatology");
+        Room room2 = new Room("Oncology");
+
+        entityManager.persist(patient);
+        entityManager.persist(doctor);
+        entityManager.persist(room1);
+        entityManager.persist(room2);
+
+        LocalDateTime nine = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+        Appointment before = new Appointment(patient, doctor, room1, nine, nine.plusHours(1));
+        Appointment enclosing = new Appointment(patient, doctor, room1, nine.plusHours(1), nine.plusHours(4));
+        Appointment after = new Appointment(patient, doctor, room1, nine.plusHours(4), nine.plusHours(5));
+        Appointment otherRoom = new Appointment(patient, doctor, room2, nine.plusHours(2), nine.plusHours(3));
+
+        entityManager.persist(before);
+        entityManager.persist(enclosing);
+        entityManager.persist(after);
+        entityManager.persist(otherRoom);
+
+        // [11:00, 12:00) touches neither 09:00-10:00 nor 13:00-14:00 and sits inside 10:00-13:00
+        Iterable<Appointment> overlapping = repoAppointments.findOverlapping("Dermatology", nine.plusHours(2), nine.plusHours(3));
+        assertThat(overlapping).containsExactly(enclosing);
+
+        assertThat(repoAppointments.findOverlapping("Dermatology", nine.plusHours(5), nine.plusHours(6))).isEmpty();
+        assertThat(repoAppointments.findOverlapping("Emergency", nine, nine.plusHours(6))).isEmpty();
+    }
     
+    @Test
+    void should_report_which_resources_are_already_booked(){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Doctor doctor2 = new Doctor ("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe");
+        Room room1 = new Room("Dermatology");
+        Room room2 = new Room("Oncology");
+
+        entityManager.persist(patient);
+        entityManager.persist(patient2);
+        entityManager.persist(doctor);
+        entityManager.persist(doctor2);
+        entityManager.persist(room1);
+        entityManager.persist(room2);
+
+        LocalDateTime nine = LocalDateTime.of(2023, 4, 24, 9, 0);
+        entityManager.persist(new Appointment(patient, doctor, room1, nine, nine.plusHours(1)));
+        entityManager.flush();
+
+        assertThat(repoAppointments.findConflictingResources("Oncology", doctor.getId(), patient2.getId(), nine, nine.plusHours(1)))
+                .containsExactly("DOCTOR");
+        assertThat(repoAppointments.findConflictingResources("Oncology", doctor2.getId(), patient.getId(), nine.plusMinutes(30), nine.plusHours(2)))
+                .containsExactly("PATIENT");
+        assertThat(repoAppointments.findConflictingResources("Dermatology", null, null, nine, nine.plusHours(1)))
+                .containsExactly("ROOM");
+        assertThat(repoAppointments.findConflictingResources("Dermatology", doctor.getId(), patient.getId(), nine.plusHours(1), nine.plusHours(2)))
+                .isEmpty();
+        assertThat(repoAppointments.findConflictingResources(null, doctor2.getId(), patient2.getId(), nine, nine.plusHours(1)))
+                .isEmpty();
+    }
+
+    @Test
+    void should_look_back_as_far_as_the_longest_appointment(){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        entityManager.persist(patient);
+        entityManager.persist(doctor);
+        entityManager.persist(room);
+
+        // As long as an appointment may last, reaching a minute past 09:00
+        LocalDateTime nine = LocalDateTime.of(2023, 4, 24, 9, 0);
+        LocalDateTime finishesAt = nine.plusMinutes(1);
+        entityManager.persist(new Appointment(patient, doctor, room, finishesAt.minus(Appointment.MAX_DURATION), finishesAt));
+        entityManager.flush();
+
+        assertThat(repoAppointments.findConflictingResources("Dermatology", doctor.getId(), patient.getId(), nine, nine.plusHours(1)))
+                .containsExactly("ROOM", "DOCTOR", "PATIENT");
+        assertThat(repoAppointments.findConflictingResources("Dermatology", doctor.getId(), patient.getId(), nine.plusMinutes(1), nine.plusHours(1)))
+                .isEmpty();
+        assertThat(repoAppointments.findOverlapping("Dermatology", nine, nine.plusHours(1))).hasSize(1);
+        assertThat(repoAppointments.findOverlappingForDoctor(doctor.getId(), nine, nine.plusHours(1))).hasSize(1);
+        assertThat(repoAppointments.findOverlappingForPatient(patient.getId(), nine, nine.plusHours(1))).hasSize(1);
+        assertThat(repoAppointments.findOverlapping("Dermatology", finishesAt, nine.plusHours(1))).isEmpty();
+    }
+
+    @Test
+    void should_filter_appointments_by_doctor_patient_room_and_window(){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Doctor doctor2 = new Doctor ("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe");
+        Room room1 = new Room("Dermatology");
+        Room room2 = new Room("Oncology");
+
+        entityManager.persist(patient);
+        entityManager.persist(patient2);
+        entityManager.persist(doctor);
+        entityManager.persist(doctor2);
+        entityManager.persist(room1);
+        entityManager.persist(room2);
+
+        LocalDateTime nine = LocalDateTime.of(2023, 4, 24, 9, 0);
+        Appointment first = entityManager.persist(new Appointment(patient, doctor, room1, nine, nine.plusHours(1)));
+        Appointment second = entityManager.persist(new Appointment(patient2, doctor, room2, nine.plusHours(1), nine.plusHours(2)));
+        Appointment third = entityManager.persist(new Appointment(patient, doctor2, room2, nine.plusHours(2), nine.plusHours(3)));
+        entityManager.flush();
+
+        assertThat(repoAppointments.findFiltered(new AppointmentFilter(doctor.getId(), null, null, null, null), 0L, 10))
+                .containsExactly(first, second);
+        assertThat(repoAppointments.findFiltered(new AppointmentFilter(null, patient.getId(), "Oncology", null, null), 0L, 10))
+                .containsExactly(third);
+        // [10:00, 11:00) intersects only the second appointment, the others just touch it
+        assertThat(repoAppointments.findFiltered(new AppointmentFilter(null, null, null, nine.plusHours(1), nine.plusHours(2)), 0L, 10))
+                .containsExactly(second);
+        assertThat(repoAppointments.findFiltered(new AppointmentFilter(null, null, null, nine.plusMinutes(90), null), 0L, 10))
+                .containsExactly(second, third);
+        assertThat(repoAppointments.findFiltered(new AppointmentFilter(), first.getId(), 1))
+                .containsExactly(second);
+        assertThat(repoAppointments.findFiltered(new AppointmentFilter(doctor2.getId(), null, "Dermatology", null, null), 0L, 10))
+                .isEmpty();
+    }
 }
@@ -0,0 +1,196 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.demo.booking.AppointmentReference;
+import com.example.demo.booking.BookingCoordinator;
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:statements", SqlStatementCounter.PROPERTY})
+@AutoConfigureMockMvc
+class AppointmentStatementCountTest {
+
+    private static final LocalDateTime NINE = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private BookingCoordinator bookingCoordinator;
+
+    private Patient patient;
+    private Doctor doctor;
+
+    @BeforeEach
+    void setUp(){
+        patient = patientRepository.save(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        doctor = doctorRepository.save(new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        roomRepository.save(new Room("Dermatology"));
+        SqlStatementCounter.reset();
+    }
+
+    @AfterEach
+    void tearDown(){
+        bookingCoordinator.cancelAll();
+    }
+
+    @Test
+    void should_book_by_reference_with_one_insert_and_no_reads_of_the_references() throws Exception {
+        AppointmentReference request = new AppointmentReference(0, patient.getId(), doctor.getId(), "Dermatology", NINE, NINE.plusHours(1));
+
+        mockMvc.perform(post("/api/appointments").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").isNumber())
+                .andExpect(jsonPath("$.patientId").value(patient.getId()))
+                .andExpect(jsonPath("$.roomName").value("Dermatology"));
+
+        // Conflict check, next id, insert
+        assertThat(appointmentStatements())
+                .as("%s", SqlStatementCounter.statements())
+                .hasSize(3)
+                .noneMatch(sql -> sql.contains("from patient") || sql.contains("from doctor") || sql.contains("from room"))
+                .noneMatch(sql -> sql.startsWith("update"))
+                .filteredOn(sql -> sql.startsWith("insert")).hasSize(1);
+    }
+
+    @Test
+    void should_reject_a_conflict_by_reference_with_a_single_query() throws Exception {
+        AppointmentReference request = new AppointmentReference(0, patient.getId(), doctor.getId(), "Dermatology", NINE, NINE.plusHours(1));
+        mockMvc.perform(post("/api/appointments").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+        SqlStatementCounter.reset();
+
+        mockMvc.perform(post("/api/appointments").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isNotAcceptable());
+
+        assertThat(SqlStatementCounter.count()).as("%s", SqlStatementCounter.statements()).isEqualTo(1);
+    }
+
+    @Test
+    void should_not_write_the_patient_doctor_or_room_of_a_full_appointment() throws Exception {
+        Appointment appointment = new Appointment(patient, doctor, new Room("Dermatology"), NINE, NINE.plusHours(1));
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isOk());
+
+        assertThat(appointmentStatements())
+                .as("%s", SqlStatementCounter.statements())
+                .noneMatch(sql -> sql.startsWith("update"))
+                .filteredOn(sql -> sql.startsWith("insert")).hasSize(1);
+    }
+
+    @Test
+    void should_log_a_booking_with_one_insert_and_no_lock_held_until_commit() throws Exception {
+        // The first booking may reserve a block of versions in a transaction of its own
+        bookingCoordinator.book(new Appointment(patient, doctor, new Room("Dermatology"), NINE.plusHours(2), NINE.plusHours(3)));
+        SqlStatementCounter.reset();
+        AppointmentReference request = new AppointmentReference(0, patient.getId(), doctor.getId(), "Dermatology", NINE, NINE.plusHours(1));
+
+        mockMvc.perform(post("/api/appointments").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+
+        assertThat(SqlStatementCounter.statements())
+                .as("%s", SqlStatementCounter.statements())
+                .filteredOn(sql -> sql.contains("change_sequence") || sql.contains("appointment_change"))
+                .hasSize(1)
+                .allMatch(sql -> sql.startsWith("insert into appointment_change"));
+    }
+
+    // Statements of the booking itself, without those of the change log
+    private static List<String> appointmentStatements(){
+        return SqlStatementCounter.statements().stream()
+                .filter(sql -> !sql.contains("change_sequence") && !sql.contains("appointment_change"))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void should_not_book_an_unknown_doctor_by_reference() throws Exception {
+        AppointmentReference request = new AppointmentReference(0, patient.getId(), doctor.getId() + 1000, "Dermatology", NINE, NINE.plusHours(1));
+
+        mockMvc.perform(post("/api/appointments").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void should_list_appointments_with_their_people_and_rooms_in_one_select() throws Exception {
+        bookThreeWithDistinctPeopleAndRooms();
+
+        mockMvc.perform(get("/api/appointments")).andExpect(status().isOk()).andExpect(jsonPath("$.length()").value(3));
+        assertSingleJoinedSelect();
+
+        mockMvc.perform(get("/api/appointments").param("unpaged", "true")).andExpect(status().isOk());
+        assertSingleJoinedSelect();
+
+        mockMvc.perform(get("/api/appointments").param("room", "Oncology 1")).andExpect(status().isOk());
+        assertSingleJoinedSelect();
+    }
+
+    @Test
+    void should_read_one_appointment_with_its_people_and_room_in_one_select() throws Exception {
+        Appointment appointment = bookThreeWithDistinctPeopleAndRooms();
+
+        mockMvc.perform(get("/api/appointments/" + appointment.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.room.roomName").value("Oncology 2"));
+        assertSingleJoinedSelect();
+    }
+
+    // Returns the last one booked
+    private Appointment bookThreeWithDistinctPeopleAndRooms(){
+        Appointment appointment = null;
+        for (int i = 0; i < 3; i++){
+            Patient p = patientRepository.save(new Patient("Paulino", "Antunez " + i, 37, "p.antunez" + i + "@email.com"));
+            Doctor d = doctorRepository.save(new Doctor ("Miren", "Iniesta " + i, 24, "m.iniesta" + i + "@hospital.accwe"));
+            Room r = roomRepository.save(new Room("Oncology " + i));
+            appointment = appointmentRepository.save(new Appointment(p, d, r, NINE.plusHours(i), NINE.plusHours(i + 1)));
+        }
+        SqlStatementCounter.reset();
+        return appointment;
+    }
+
+    private void assertSingleJoinedSelect(){
+        assertThat(SqlStatementCounter.statements())
+                .as("%s", SqlStatementCounter.statements())
+                .hasSize(1)
+                .allMatch(sql -> sql.startsWith("select") && sql.contains(" join "));
+        SqlStatementCounter.reset();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.example.demo.booking.BookingCoordinator;
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:streaming")
+@AutoConfigureMockMvc
+class AppointmentStreamingTest {
+
+    private static final LocalDateTime NINE = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private BookingCoordinator bookingCoordinator;
+
+    @AfterEach
+    void tearDown(){
+        bookingCoordinator.cancelAll();
+        patientRepository.deleteAll();
+        doctorRepository.deleteAll();
+    }
+
+    @Test
+    void should_stream_an_empty_table_as_an_empty_array() throws Exception {
+        assertThat(stream("/api/appointments").size()).isZero();
+        assertThat(stream("/api/patients").size()).isZero();
+    }
+
+    @Test
+    void should_stream_the_same_appointments_as_the_unpaged_list() throws Exception {
+        // More rows than one chunk, so the persistence context is cleared mid stream
+        Doctor doctor = doctorRepository.save(new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        Room room = roomRepository.save(new Room("Dermatology"));
+        List<Patient> patients = new ArrayList<>();
+        for (int i = 0; i < 30; i++){
+            patients.add(new Patient("Jose Luis", "Olaya " + i, 37, "j.olaya" + i + "@email.com"));
+        }
+        patients = patientRepository.saveAll(patients);
+        List<Appointment> appointments = new ArrayList<>();
+        for (int i = 0; i < 1200; i++){
+            appointments.add(new Appointment(patients.get(i % patients.size()), doctor, room, NINE.plusMinutes(15L * i), NINE.plusMinutes(15L * i + 15)));
+        }
+        appointmentRepository.saveAll(appointments);
+
+        JsonNode streamed = stream("/api/appointments");
+        JsonNode listed = objectMapper.readTree(mockMvc.perform(get("/api/appointments").param("unpaged", "true"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString());
+
+        assertThat(streamed.size()).isEqualTo(1200);
+        assertThat(streamed).isEqualTo(listed);
+        assertThat(streamed.get(0).get("patient").get("firstName").asText()).isEqualTo("Jose Luis");
+
+        JsonNode streamedPatients = stream("/api/patients");
+        assertThat(streamedPatients.size()).isEqualTo(30);
+        assertThat(streamedPatients.get(29).get("lastName").asText()).isEqualTo("Olaya 29");
+
+        // The id-only shape streams too, and the same list side-loads one doctor and room in a fraction of the bytes
+        JsonNode references = stream("/api/appointments", "expand", "none");
+        assertThat(references.size()).isEqualTo(1200);
+        assertThat(references.get(0).get("doctorId").asLong()).isEqualTo(doctor.getId());
+        assertThat(references.get(0).get("startsAt")).isEqualTo(listed.get(0).get("startsAt"));
+
+        String included = mockMvc.perform(get("/api/appointments").param("unpaged", "true").param("expand", "included"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(objectMapper.readTree(included).get("included").get("doctors").size()).isEqualTo(1);
+        assertThat(objectMapper.readTree(included).get("included").get("patients").size()).isEqualTo(30);
+        assertThat(included.length()).isLessThan(objectMapper.writeValueAsString(listed).length() / 2);
+    }
+
+    private JsonNode stream(String path, String... params) throws Exception {
+        MockHttpServletRequestBuilder request = get(path).param("stream", "true");
+        for (int i = 0; i < params.length; i += 2){
+            request.param(params[i], params[i + 1]);
+        }
+        MvcResult started = mockMvc.perform(request)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.demo.booking.BookingCoordinator;
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:binary")
+@AutoConfigureMockMvc
+class BinaryFormatsTest {
+
+    private static final LocalDateTime NINE = LocalDateTime.of(2023, 4, 24, 9, 0);
+    private static final MediaType CBOR = MediaType.parseMediaType("application/cbor");
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    private final ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+    private final ObjectMapper smile = new ObjectMapper(new SmileFactory());
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private BookingCoordinator bookingCoordinator;
+
+    @Autowired
+    private MappingJackson2CborHttpMessageConverter cborConverter;
+
+    @Autowired
+    private MappingJackson2SmileHttpMessageConverter smileConverter;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @AfterEach
+    void tearDown(){
+        bookingCoordinator.cancelAll();
+        patientRepository.deleteAll();
+        doctorRepository.deleteAll();
+        roomRepository.deleteAll();
+    }
+
+    @Test
+    void should_answer_in_the_accepted_format_with_the_json_dates() throws Exception {
+        book();
+
+        byte[] body = mockMvc.perform(get("/api/appointments").accept(CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+        JsonNode appointments = cbor.readTree(body);
+        assertThat(appointments.get(0).get("startsAt").asText()).isEqualTo("09:00 24/04/2023");
+        assertThat(appointments.get(0).get("room").get("roomName").asText()).isEqualTo("Dermatology");
+
+        body = mockMvc.perform(get("/api/appointments").param("expand", "none").accept(SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+        appointments = smile.readTree(body);
+        assertThat(appointments.get(0).get("finishesAt").asText()).isEqualTo("10:00 24/04/2023");
+        assertThat(appointments.get(0).get("roomName").asText()).isEqualTo("Dermatology");
+
+        mockMvc.perform(get("/api/appointments"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void should_read_a_binary_request_body() throws Exception {
+        ObjectNode appointment = cbor.createObjectNode().put("startsAt", "09:00 24/04/2023").put("finishesAt", "10:00 24/04/2023");
+        appointment.putObject("room").put("roomName", "Dermatology");
+        appointment.putObject("doctor").put("firstName", "Perla").put("lastName", "Amalia").put("age", 24).put("email", "p.amalia@hospital.accwe");
+        appointment.putObject("patient").put("firstName", "Jose Luis").put("lastName", "Olaya").put("age", 37).put("email", "j.olaya@email.com");
+        byte[] body = cbor.writeValueAsBytes(appointment);
+
+        byte[] answer = mockMvc.perform(post("/api/appointment").contentType(CBOR).content(body).accept(CBOR))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        assertThat(cbor.readTree(answer).get("startsAt").asText()).isEqualTo("09:00 24/04/2023");
+    }
+
+    @Test
+    void should_build_the_binary_mappers_with_the_json_customizations() throws Exception {
+        // A bare LocalDateTime, no @JsonFormat of an entity involved
+        assertThat(cbor.readTree(cborConverter.getObjectMapper().writeValueAsBytes(NINE)).asText()).isEqualTo("09:00 24/04/2023");
+        assertThat(smile.readTree(smileConverter.getObjectMapper().writeValueAsBytes(NINE)).asText()).isEqualTo("09:00 24/04/2023");
+        assertThat(smileConverter.getObjectMapper().readValue(smile.writeValueAsBytes("09:00 24/04/2023"), LocalDateTime.class)).isEqualTo(NINE);
+    }
+
+    private void book(){
+        bookingCoordinator.book(new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe"), new Room("Dermatology"), NINE, NINE.plusHours(1)));
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.demo.booking.AppointmentChangeLog;
+import com.example.demo.booking.BookingCoordinator;
+import com.example.demo.booking.QueryConflictDetector;
+import com.example.demo.cache.TableVersions;
+import com.example.demo.repositories.AppointmentRepository;
+import com.example.demo.repositories.DoctorRepository;
+import com.example.demo.repositories.PatientRepository;
+import com.example.demo.repositories.RoomRepository;
+import com.example.demo.entities.*;
+
+/**
+ * Hammers the coordinator from many threads against an in-memory repository
+ * that takes about as long as a database round trip to insert a row.
+ */
+@SpringJUnitConfig(BookingCoordinatorStressTest.Config.class)
+class BookingCoordinatorStressTest {
+
+    private static final int ROOMS = 16;
+    private static final int SLOTS = 40;
+    private static final int ATTEMPTS = 4000;
+    private static final long SAVE_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final LocalDateTime DAY = LocalDateTime.of(2023, 4, 24, 8, 0);
+
+    private static final Map<String, List<Appointment>> store = new ConcurrentHashMap<>();
+    private static final AtomicLong ids = new AtomicLong();
+
+    @MockBean
+    private AppointmentChangeLog changeLog;
+
+    // Deliberately not a @Configuration, so that component scans of the application skip it
+    @Import({BookingCoordinator.class, QueryConflictDetector.class, TableVersions.class})
+    static class Config {
+
+        @Bean
+        AppointmentRepository appointmentRepository(){
+            AppointmentRepository repository = mock(AppointmentRepository.class, withSettings().stubOnly());
+            when(repository.findOverlapping(anyString(), any(LocalDateTime.class), any(LocalDateTime.class))).thenAnswer(invocation -> {
+                LocalDateTime startsAt = invocation.getArgument(1);
+                LocalDateTime finishesAt = invocation.getArgument(2);
+                List<Appointment> found = new ArrayList<>();
+                for (Appointment a: store.getOrDefault((String) invocation.getArgument(0), new ArrayList<>())){
+                    if (a.getStartsAt().isBefore(finishesAt) && startsAt.isBefore(a.getFinishesAt())){
+                        found.add(a);
+                    }
+                }
+                return found;
+            });
+            // Patients and doctors are never stored here, only the room is checked
+            when(repository.findConflictingResources(anyString(), isNull(), isNull(), any(LocalDateTime.class), any(LocalDateTime.class))).thenAnswer(invocation -> {
+                LocalDateTime startsAt = invocation.getArgument(3);
+                LocalDateTime finishesAt = invocation.getArgument(4);
+                for (Appointment a: store.getOrDefault((String) invocation.getArgument(0), new ArrayList<>())){
+                    if (a.getStartsAt().isBefore(finishesAt) && startsAt.isBefore(a.getFinishesAt())){
+                        return Collections.singletonList("ROOM");
+                    }
+                }
+                return Collections.emptyList();
+            });
+            when(repository.save(any(Appointment.class))).thenAnswer(invocation -> {
+                Appointment appointment = invocation.getArgument(0);
+                LockSupport.parkNanos(SAVE_NANOS);
+                appointment.setId(ids.incrementAndGet());
+                store.computeIfAbsent(appointment.getRoom().getRoomName(), name -> new CopyOnWriteArrayList<>()).add(appointment);
+                return appointment;
+            });
+            doAnswer(invocation -> {
+                store.clear();
+                return null;
+            }).when(repository).deleteAll();
+            return repository;
+        }
+
+        @Bean
+        RoomRepository roomRepository(){
+            return mock(RoomRepository.class);
+        }
+
+        @Bean
+        DoctorRepository doctorRepository(){
+            return mock(DoctorRepository.class);
+        }
+
+        @Bean
+        PatientRepository patientRepository(){
+            return mock(PatientRepository.class);
+        }
+
+        @Bean
+        PlatformTransactionManager transactionManager(){
+            return mock(PlatformTransactionManager.class);
+        }
+    }
+
+    @Autowired
+    private BookingCoordinator bookingCoordinator;
+
+    @BeforeEach
+    void setUp(){
+        bookingCoordinator.cancelAll();
+    }
+
+    @Test
+    void should_never_double_book_a_room_under_contention() throws Exception {
+        System.out.println("threads  booked  rejected  bookings/s");
+        for (int threads = 1; threads <= 16; threads *= 2){
+            bookingCoordinator.cancelAll();
+
+            long started = System.nanoTime();
+            long booked = run(threads);
+            double seconds = (System.nanoTime() - started) / 1e9;
+
+            System.out.printf("%7d  %6d  %8d  %10.0f%n", threads, booked, ATTEMPTS - booked, ATTEMPTS / seconds);
+
+            assertNoOverlaps();
+            long stored = 0;
+            for (List<Appointment> appointments: store.values()){
+                stored += appointments.size();
+            }
+            assertThat(stored).isEqualTo(booked);
+        }
+    }
+
+    // Every thread books random one hour slots, half of them shifted by 30 minutes
+    private long run(int threads) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++){
+            final Random random = new Random(31L * threads + t);
+            final int attempts = ATTEMPTS / threads;
+            results.add(pool.submit(() -> {
+                start.await();
+                long booked = 0;
+                for (int i = 0; i < attempts; i++){
+                    Room room = new Room("Room " + random.nextInt(ROOMS));
+                    LocalDateTime startsAt = DAY.plusMinutes(60L * random.nextInt(SLOTS) + (random.nextBoolean() ? 30 : 0));
+                    Appointment appointment = new Appointment(new Patient(), new Doctor(), room, startsAt, startsAt.plusHours(1));
+                    Optional<Appointment> result = bookingCoordinator.book(appointment);
+                    if (result.isPresent()){
+                        booked++;
+                    }
+                }
+                return booked;
+            }));
+        }
+        start.countDown();
+        long booked = 0;
+        for (Future<Long> result: results){
+            booked += result.get(1, TimeUnit.MINUTES);
+        }
+        pool.shutdown();
+        return booked;
+    }
+
+    private void assertNoOverlaps(){
+        for (List<Appointment> appointments: store.values()){
+            List<Appointment> sorted = new ArrayList<>(appointments);
+            sorted.sort(Comparator.comparing(Appointment::getStartsAt));
+            for (int i = 1; i < sorted.size(); i++){
+                assertThat(sorted.get(i).getStartsAt()).isAfterOrEqualTo(sorted.get(i - 1).getFinishesAt());
+            }
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.booking.BookingCoordinator;
+import com.example.demo.repositories.AppointmentRepository;
+import com.example.demo.repositories.DoctorRepository;
+import com.example.demo.repositories.PatientRepository;
+import com.example.demo.repositories.RoomRepository;
+import com.example.demo.entities.*;
+
+/**
+ * Two application contexts stand in for two instances behind a load
+ * balancer. They share one file based H2 database and book in the
+ * database lock mode.
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+class BookingRowLockTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2023, 4, 24, 8, 0);
+
+    private ConfigurableApplicationContext node1;
+    private ConfigurableApplicationContext node2;
+
+    @BeforeAll
+    void startNodes(){
+        String url = "jdbc:h2:file:./target/h2/booking-row-lock-" + System.nanoTime() + ";LOCK_TIMEOUT=20000";
+        node1 = startNode(url);
+        node2 = startNode(url);
+    }
+
+    @AfterAll
+    void stopNodes(){
+        node2.close();
+        node1.close();
+    }
+
+    @Test
+    void should_book_each_slot_once_across_both_nodes() throws Exception {
+        int slots = 10;
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+
+        // Four threads per node race for the same ten slots of one room
+        for (int t = 0; t < 8; t++){
+            BookingCoordinator coordinator = (t % 2 == 0 ? node1 : node2).getBean(BookingCoordinator.class);
+            for (int slot = 0; slot < slots; slot++){
+                LocalDateTime startsAt = DAY.plusHours(slot);
+                results.add(pool.submit(() -> {
+                    start.await();
+                    Appointment appointment = new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                            new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"), new Room("Cardiology"),
+                            startsAt, startsAt.plusHours(1));
+                    return coordinator.book(appointment).isPresent();
+                }));
+            }
+        }
+        start.countDown();
+
+        int booked = 0;
+        for (Future<Boolean> result: results){
+            if (result.get(1, TimeUnit.MINUTES)){
+                booked++;
+            }
+        }
+        pool.shutdown();
+
+        assertThat(booked).isEqualTo(slots);
+
+        List<Appointment> stored = new ArrayList<>(node2.getBean(AppointmentRepository.class).findAll());
+        stored.sort(Comparator.comparing(Appointment::getStartsAt));
+        assertThat(stored).hasSize(slots);
+        for (int i = 1; i < stored.size(); i++){
+            assertThat(stored.get(i).getStartsAt()).isAfterOrEqualTo(stored.get(i - 1).getFinishesAt());
+        }
+        assertThat(node1.getBean(RoomRepository.class).findByRoomName("Cardiology")).isPresent();
+    }
+
+    @Test
+    void should_wait_for_a_booking_on_another_node_before_cancelling_all() throws Exception {
+        Patient patient = node1.getBean(PatientRepository.class).save(new Patient("Paulino", "Antunez", 37, "p.antunez@email.com"));
+        Doctor doctor = node1.getBean(DoctorRepository.class).save(new Doctor("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe"));
+        node1.getBean(RoomRepository.class).save(new Room("Oncology"));
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+
+        // A booking on node 1 holding the room row, as bookWithRowLock does until it commits
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        Future<?> booking = pool.submit(() -> new TransactionTemplate(node1.getBean(PlatformTransactionManager.class)).executeWithoutResult(status -> {
+            Room room = node1.getBean(RoomRepository.class).findByRoomNameForUpdate("Oncology").get();
+            node1.getBean(AppointmentRepository.class).save(new Appointment(patient, doctor, room, DAY, DAY.plusHours(1)));
+            locked.countDown();
+            try {
+                commit.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }));
+        try {
+            assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+            Future<?> cancelAll = pool.submit(() -> node2.getBean(BookingCoordinator.class).cancelAll());
+
+            Thread.sleep(300);
+            assertThat(cancelAll.isDone()).isFalse();
+            commit.countDown();
+            booking.get(10, TimeUnit.SECONDS);
+            cancelAll.get(30, TimeUnit.SECONDS);
+
+            assertThat(node2.getBean(AppointmentRepository.class).count()).isZero();
+        } finally {
+            commit.countDown();
+            pool.shutdown();
+        }
+    }
+
+    private static ConfigurableApplicationContext startNode(String url){
+        return new SpringApplicationBuilder(TechhubApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + url,
+                        "--booking.lock-mode=database",
+                        "--spring.main.banner-mode=off");
+    }
+}
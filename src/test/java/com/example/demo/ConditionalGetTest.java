@@ -0,0 +1,91 @@
+package com.example.demo;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.demo.booking.BookingCoordinator;
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:etags")
+@AutoConfigureMockMvc
+class ConditionalGetTest {
+
+    private static final LocalDateTime NINE = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private BookingCoordinator bookingCoordinator;
+
+    @AfterEach
+    void tearDown(){
+        bookingCoordinator.cancelAll();
+        patientRepository.deleteAll();
+        doctorRepository.deleteAll();
+        roomRepository.deleteAll();
+    }
+
+    @Test
+    void should_change_the_tags_of_every_table_a_booking_wrote_to() throws Exception {
+        String appointments = etag("/api/appointments");
+        String rooms = etag("/api/rooms");
+        String doctors = etag("/api/doctors");
+        mockMvc.perform(get("/api/appointments").header("If-None-Match", appointments)).andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/rooms").header("If-None-Match", rooms)).andExpect(status().isNotModified());
+
+        // The full appointment creates its room, patient and doctor along the way
+        Appointment appointment = new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe"), new Room("Dermatology"), NINE, NINE.plusHours(1));
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/appointments").header("If-None-Match", appointments))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].room.roomName").value("Dermatology"));
+        mockMvc.perform(get("/api/rooms").header("If-None-Match", rooms)).andExpect(status().isOk());
+        mockMvc.perform(get("/api/doctors").header("If-None-Match", doctors)).andExpect(status().isOk());
+
+        String afterBooking = etag("/api/appointments");
+        mockMvc.perform(delete("/api/appointments")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/appointments").header("If-None-Match", afterBooking)).andExpect(status().isNoContent());
+    }
+
+    @Test
+    void should_tag_the_streamed_list_too() throws Exception {
+        String etag = mockMvc.perform(get("/api/patients").param("stream", "true"))
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+        mockMvc.perform(get("/api/patients").param("stream", "true").header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+    }
+
+    private String etag(String path) throws Exception {
+        return mockMvc.perform(get(path)).andReturn().getResponse().getHeader("ETag");
+    }
+}
@@ -5,6 +5,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 
@@ -103,4 +104,17 @@ class DoctorJpaUnitTest {
         assertThat(repository.findAll()).isEmpty();
     }
     
+    @Test
+    void should_page_doctors_by_id(){
+        Doctor doc1 = new Doctor("Juan","Carlos", 34, "j.carlos@hospital.accwe");
+        Doctor doc2 = new Doctor("Cornelio","Andrea", 59, "c.andrea@hospital.accwe");
+        Doctor doc3 = new Doctor("Clarisa","Julia", 29, "c.julia@hospital.accwe");
+
+        entityManager.persist(doc1);
+        entityManager.persist(doc2);
+        entityManager.persist(doc3);
+
+        assertThat(repository.findByIdGreaterThanOrderByIdAsc(0L, PageRequest.of(0, 2))).containsExactly(doc1, doc2);
+        assertThat(repository.findByIdGreaterThanOrderByIdAsc(doc2.getId(), PageRequest.of(0, 2))).containsExactly(doc3);
+    }
 }
@@ -1,6 +1,11 @@
 
 package com.example.demo;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -8,7 +13,10 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,9 +25,17 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import com.example.demo.booking.AppointmentEvent;
+import com.example.demo.booking.RoomAvailability;
+import com.example.demo.cache.EntityCaches;
+import com.example.demo.cache.EntityReadCache;
+import com.example.demo.cache.TableVersions;
 import com.example.demo.controllers.*;
 import com.example.demo.repositories.*;
 import com.example.demo.entities.*;
@@ -27,8 +43,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 
 @WebMvcTest(DoctorController.class)
+@Import({EntityReadCache.class, TableVersions.class})
 class DoctorControllerUnitTest{
 
+    @MockBean
+    private EntityCaches entityCaches;
+
     @MockBean
     private DoctorRepository doctorRepository;
 
@@ -55,7 +75,7 @@ class DoctorControllerUnitTest{
     void shouldGetNoDoctors() throws Exception {
         List<Doctor> doctors = new ArrayList<>();
         when(doctorRepository.findAll()).thenReturn(doctors);
-        mockMvc.perform(get("/api/doctors"))
+        mockMvc.perform(get("/api/doctors").param("unpaged", "true"))
                 .andExpect(status().isNoContent());
     }
 
@@ -69,10 +89,37 @@ class DoctorControllerUnitTest{
         doctors.add(doctor2);
 
         when(doctorRepository.findAll()).thenReturn(doctors);
-        mockMvc.perform(get("/api/doctors"))
+        mockMvc.perform(get("/api/doctors").param("unpaged", "true"))
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void shouldAnswerNotModifiedUntilADoctorIsWritten() throws Exception {
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        when(doctorRepository.findAll()).thenReturn(Collections.singletonList(doctor));
+
+        String etag = mockMvc.perform(get("/api/doctors").param("unpaged", "true"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/doctors").param("unpaged", "true").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+        verify(doctorRepository, times(1)).findAll();
+
+        // Another page of the same table is another tag
+        mockMvc.perform(get("/api/doctors").param("unpaged", "true").param("limit", "5").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/doctor").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(doctor)))
+                .andExpect(status().isCreated());
+        mockMvc.perform(get("/api/doctors").param("unpaged", "true").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", org.hamcrest.Matchers.not(etag)));
+    }
+
     @Test
     void shouldGetDoctorById() throws Exception {
         Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
@@ -125,15 +172,58 @@ class DoctorControllerUnitTest{
         mockMvc.perform(delete("/api/doctors"))
                 .andExpect(status().isOk());
     }
+
+    @Test
+    void shouldGetDoctorsOnePageAtATime() throws Exception {
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Doctor doctor2 = new Doctor ("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe");
+        Doctor doctor3 = new Doctor ("Carina", "Zaray", 49, "c.zaray@hospital.accwe");
+        doctor.setId(11);
+        doctor2.setId(12);
+        doctor3.setId(13);
+
+        // Asked for one more than the limit, the extra one means there is a next page
+        when(doctorRepository.findByIdGreaterThanOrderByIdAsc(10L, PageRequest.of(0, 3)))
+                .thenReturn(Arrays.asList(doctor, doctor2, doctor3));
+        mockMvc.perform(get("/api/doctors").param("after", "10").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].id").value(12))
+                .andExpect(header().string("X-Next-Cursor", "12"));
+
+        when(doctorRepository.findByIdGreaterThanOrderByIdAsc(12L, PageRequest.of(0, 3)))
+                .thenReturn(Arrays.asList(doctor3));
+        mockMvc.perform(get("/api/doctors").param("after", "12").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+
+        verify(doctorRepository, never()).findAll();
+    }
+
+    @Test
+    void shouldNotGetDoctorsWithAnInvalidLimit() throws Exception {
+        mockMvc.perform(get("/api/doctors").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/doctors").param("limit", "1001"))
+                .andExpect(status().isBadRequest());
+    }
 }
 
 
 @WebMvcTest(PatientController.class)
+@Import({EntityReadCache.class, TableVersions.class})
 class PatientControllerUnitTest{
 
+    @MockBean
+    private EntityCaches entityCaches;
+
     @MockBean
     private PatientRepository patientRepository;
 
+    @MockBean
+    private JsonStreams jsonStreams;
+
     @Autowired 
     private MockMvc mockMvc;
 
@@ -158,7 +248,7 @@ class PatientControllerUnitTest{
     void shouldGetNoPatients() throws Exception {
         List<Patient> patients = new ArrayList<>();
         when(patientRepository.findAll()).thenReturn(patients);
-        mockMvc.perform(get("/api/patients"))
+        mockMvc.perform(get("/api/patients").param("unpaged", "true"))
                 .andExpect(status().isNoContent());
     }
 
@@ -172,7 +262,7 @@ class PatientControllerUnitTest{
         patients.add(patient2);
 
         when(patientRepository.findAll()).thenReturn(patients);
-        mockMvc.perform(get("/api/patients"))
+        mockMvc.perform(get("/api/patients").param("unpaged", "true"))
                 .andExpect(status().isOk());
     }
 
@@ -232,11 +322,24 @@ class PatientControllerUnitTest{
 }
 
 @WebMvcTest(RoomController.class)
+@Import({RoomAvailability.class, EntityReadCache.class, TableVersions.class})
 class RoomControllerUnitTest{
 
+    @MockBean
+    private EntityCaches entityCaches;
+
     @MockBean
     private RoomRepository roomRepository;
 
+    @MockBean
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private RoomAvailability roomAvailability;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Autowired 
     private MockMvc mockMvc;
 
@@ -258,7 +361,7 @@ class RoomControllerUnitTest{
     void shouldGetNoRooms() throws Exception {
         List<Room> rooms = new ArrayList<>();
         when(roomRepository.findAll()).thenReturn(rooms);
-        mockMvc.perform(get("/api/rooms"))
+        mockMvc.perform(get("/api/rooms").param("unpaged", "true"))
                 .andExpect(status().isNoContent());
     }
 
@@ -272,10 +375,27 @@ class RoomControllerUnitTest{
         rooms.add(room2);
 
         when(roomRepository.findAll()).thenReturn(rooms);
-        mockMvc.perform(get("/api/rooms"))
+        mockMvc.perform(get("/api/rooms").param("unpaged", "true"))
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void shouldGetRoomsOnePageAtATimeByName() throws Exception {
+        when(roomRepository.findByRoomNameGreaterThanOrderByRoomNameAsc("", PageRequest.of(0, 101)))
+                .thenReturn(Arrays.asList(new Room("Dermatology"), new Room("Oncology")));
+        mockMvc.perform(get("/api/rooms"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+
+        when(roomRepository.findByRoomNameGreaterThanOrderByRoomNameAsc("Dermatology", PageRequest.of(0, 2)))
+                .thenReturn(Arrays.asList(new Room("Oncology"), new Room("Pediatrics")));
+        mockMvc.perform(get("/api/rooms").param("after", "Dermatology").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].roomName").value("Oncology"))
+                .andExpect(header().string("X-Next-Cursor", "Oncology"));
+    }
+
     @Test
     void shouldGetRoomByName() throws Exception {
         Room room = new Room("Dermatology");
@@ -326,4 +446,115 @@ class RoomControllerUnitTest{
                 .andExpect(status().isOk());
     }
 
+    @Test
+    void shouldGetFreeSlotsOfRoom() throws Exception {
+        Room room = new Room("Dermatology");
+        LocalDateTime nine = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+        List<Appointment> appointments = Arrays.asList(
+                new Appointment(new Patient(), new Doctor(), room, nine, nine.plusHours(1)),
+                new Appointment(new Patient(), new Doctor(), room, nine.plusMinutes(90), nine.plusHours(2)),
+                new Appointment(new Patient(), new Doctor(), room, nine.plusHours(12), nine.plusHours(16)));
+
+        roomAvailability.invalidateAll();
+        when(roomRepository.findByRoomName("Dermatology")).thenReturn(Optional.of(room));
+        when(appointmentRepository.findOverlapping(eq("Dermatology"), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(appointments);
+
+        // 08:00 24/04 to 12:00 25/04 crosses midnight, the evening and the next morning form one slot
+        mockMvc.perform(get("/api/rooms/{roomName}/availability", "Dermatology")
+                .param("from", "08:00 24/04/2023").param("to", "12:00 25/04/2023").param("minDuration", "45"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].startsAt").value("08:00 24/04/2023"))
+                .andExpect(jsonPath("$[0].finishesAt").value("09:00 24/04/2023"))
+                .andExpect(jsonPath("$[1].startsAt").value("11:00 24/04/2023"))
+                .andExpect(jsonPath("$[1].finishesAt").value("21:00 24/04/2023"))
+                .andExpect(jsonPath("$[2].startsAt").value("01:00 25/04/2023"))
+                .andExpect(jsonPath("$[2].finishesAt").value("12:00 25/04/2023"));
+    }
+
+    @Test
+    void shouldGetFreeSlotsAroundAnAppointmentSpanningDays() throws Exception {
+        Room room = new Room("Dermatology");
+        LocalDateTime evening = LocalDateTime.of(2023, 4, 24, 20, 0);
+
+        List<Appointment> appointments = Arrays.asList(
+                new Appointment(new Patient(), new Doctor(), room, evening, evening.plusDays(1)),
+                new Appointment(new Patient(), new Doctor(), room, evening.plusHours(38), evening.plusHours(39)));
+
+        roomAvailability.invalidateAll();
+        when(roomRepository.findByRoomName("Dermatology")).thenReturn(Optional.of(room));
+        when(appointmentRepository.findOverlapping(eq("Dermatology"), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(appointments);
+
+        // The 25th is cached first, so the 24th and the 26th load together around it
+        mockMvc.perform(get("/api/rooms/{roomName}/availability", "Dermatology")
+                .param("from", "00:00 25/04/2023").param("to", "00:00 26/04/2023"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].startsAt").value("20:00 25/04/2023"));
+
+        mockMvc.perform(get("/api/rooms/{roomName}/availability", "Dermatology")
+                .param("from", "00:00 24/04/2023").param("to", "00:00 27/04/2023"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].startsAt").value("00:00 24/04/2023"))
+                .andExpect(jsonPath("$[0].finishesAt").value("20:00 24/04/2023"))
+                .andExpect(jsonPath("$[1].startsAt").value("20:00 25/04/2023"))
+                .andExpect(jsonPath("$[1].finishesAt").value("10:00 26/04/2023"))
+                .andExpect(jsonPath("$[2].startsAt").value("11:00 26/04/2023"))
+                .andExpect(jsonPath("$[2].finishesAt").value("00:00 27/04/2023"));
+    }
+
+    @Test
+    void shouldCacheFreeSlotsUntilTheRoomChanges() throws Exception {
+        Room room = new Room("Dermatology");
+        LocalDateTime nine = LocalDateTime.of(2023, 4, 24, 9, 0);
+        Appointment appointment = new Appointment(new Patient(), new Doctor(), room, nine, nine.plusHours(1));
+
+        roomAvailability.invalidateAll();
+        when(roomRepository.findByRoomName("Dermatology")).thenReturn(Optional.of(room));
+
+        for (int i = 0; i < 3; i++){
+            mockMvc.perform(get("/api/rooms/{roomName}/availability", "Dermatology")
+                    .param("from", "08:00 24/04/2023").param("to", "18:00 24/04/2023"))
+                    .andExpect(status().isOk());
+        }
+        verify(appointmentRepository, times(1)).findOverlapping(eq("Dermatology"), any(LocalDateTime.class), any(LocalDateTime.class));
+
+        eventPublisher.publishEvent(new AppointmentEvent(AppointmentEvent.Type.CREATED, appointment));
+
+        mockMvc.perform(get("/api/rooms/{roomName}/availability", "Dermatology")
+                .param("from", "08:00 24/04/2023").param("to", "18:00 24/04/2023"))
+                .andExpect(status().isOk());
+        verify(appointmentRepository, times(2)).findOverlapping(eq("Dermatology"), any(LocalDateTime.class), any(LocalDateTime.class));
+    }
+
+    @Test
+    void shouldNotGetAvailabilityOfUnknownRoom() throws Exception {
+        mockMvc.perform(get("/api/rooms/{roomName}/availability", "Oncology")
+                .param("from", "08:00 24/04/2023").param("to", "18:00 24/04/2023"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldNotGetAvailabilityOfEmptyRange() throws Exception {
+        mockMvc.perform(get("/api/rooms/{roomName}/availability", "Dermatology")
+                .param("from", "18:00 24/04/2023").param("to", "08:00 24/04/2023"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldNotGetAvailabilityOfTooWideARange() throws Exception {
+        when(roomRepository.findByRoomName("Dermatology")).thenReturn(Optional.of(new Room("Dermatology")));
+
+        mockMvc.perform(get("/api/rooms/{roomName}/availability", "Dermatology")
+                .param("from", "08:00 24/04/2023").param("to", "08:01 25/05/2023"))
+                .andExpect(status().isBadRequest());
+        verify(appointmentRepository, never()).findOverlapping(eq("Dermatology"), any(LocalDateTime.class), any(LocalDateTime.class));
+
+        mockMvc.perform(get("/api/rooms/{roomName}/availability", "Dermatology")
+                .param("from", "08:00 24/04/2023").param("to", "08:00 25/05/2023"))
+                .andExpect(status().isOk());
+    }
+
 }
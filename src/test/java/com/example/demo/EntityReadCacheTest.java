@@ -0,0 +1,91 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.demo.booking.BookingCoordinator;
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:readcache", SqlStatementCounter.PROPERTY, "entity-cache.size=100"})
+@AutoConfigureMockMvc
+class EntityReadCacheTest {
+
+    private static final LocalDateTime NINE = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private BookingCoordinator bookingCoordinator;
+
+    private Patient patient;
+    private Appointment appointment;
+
+    @BeforeEach
+    void setUp(){
+        patient = patientRepository.save(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        Doctor doctor = doctorRepository.save(new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        Room room = roomRepository.save(new Room("Dermatology"));
+        appointment = appointmentRepository.save(new Appointment(patient, doctor, room, NINE, NINE.plusHours(1)));
+        SqlStatementCounter.reset();
+    }
+
+    @AfterEach
+    void tearDown(){
+        bookingCoordinator.cancelAll();
+        patientRepository.deleteAll();
+        doctorRepository.deleteAll();
+        roomRepository.deleteAll();
+    }
+
+    @Test
+    void should_read_each_entity_from_the_database_once() throws Exception {
+        for (int i = 0; i < 3; i++){
+            mockMvc.perform(get("/api/patients/" + patient.getId())).andExpect(status().isOk());
+            mockMvc.perform(get("/api/rooms/Dermatology")).andExpect(status().isOk());
+            mockMvc.perform(get("/api/appointments/" + appointment.getId()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.patient.firstName").value("Jose Luis"));
+        }
+        assertThat(SqlStatementCounter.statements()).as("%s", SqlStatementCounter.statements()).hasSize(3);
+    }
+
+    @Test
+    void should_forget_deleted_entities() throws Exception {
+        mockMvc.perform(get("/api/appointments/" + appointment.getId())).andExpect(status().isOk());
+        mockMvc.perform(delete("/api/appointments/" + appointment.getId())).andExpect(status().isOk());
+        mockMvc.perform(get("/api/appointments/" + appointment.getId())).andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/api/patients/" + patient.getId())).andExpect(status().isOk());
+        mockMvc.perform(delete("/api/patients")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/patients/" + patient.getId())).andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/api/rooms/Dermatology")).andExpect(status().isOk());
+        mockMvc.perform(delete("/api/rooms/Dermatology")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/rooms/Dermatology")).andExpect(status().isNotFound());
+    }
+}
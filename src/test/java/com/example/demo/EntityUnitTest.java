@@ -264,5 +264,10 @@ class EntityUnitTest {
         assertThat(a1.overlaps(a3)).isTrue();
         assertThat(a2.overlaps(a3)).isFalse();
 
+        // An appointment enclosing another one overlaps it both ways
+        Appointment a4 = new Appointment(p1, d1, r1, a2startsAt, a3finishesAt);
+        assertThat(a4.overlaps(a1)).isTrue();
+        assertThat(a1.overlaps(a4)).isTrue();
+
     }
 }
@@ -0,0 +1,81 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import net.jqwik.api.Arbitraries;
+import net.jqwik.api.Arbitrary;
+import net.jqwik.api.Combinators;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.Provide;
+
+import com.example.demo.booking.FreeIntervals;
+import com.example.demo.booking.FreeSlot;
+import com.example.demo.entities.*;
+
+class FreeIntervalsUnitTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2023, 4, 24, 0, 0);
+    private static final int DAY_MINUTES = 24 * 60;
+
+    @Property(tries = 300)
+    void should_leave_free_exactly_the_minutes_nobody_booked(@ForAll("calendar") List<int[]> first, @ForAll("calendar") List<int[]> second){
+        List<FreeSlot> free = FreeIntervals.intersect(
+                FreeIntervals.between(appointments(first), DAY, at(DAY_MINUTES)),
+                FreeIntervals.between(appointments(second), DAY, at(DAY_MINUTES)));
+
+        boolean[] expected = new boolean[DAY_MINUTES];
+        for (int minute = 0; minute < DAY_MINUTES; minute++){
+            expected[minute] = !booked(first, minute) && !booked(second, minute);
+        }
+        boolean[] found = new boolean[DAY_MINUTES];
+        LocalDateTime previousEnd = null;
+        for (FreeSlot slot: free){
+            assertThat(slot.getStartsAt()).isBefore(slot.getFinishesAt());
+            if (previousEnd != null){
+                assertThat(slot.getStartsAt()).isAfterOrEqualTo(previousEnd);
+            }
+            previousEnd = slot.getFinishesAt();
+            for (LocalDateTime t = slot.getStartsAt(); t.isBefore(slot.getFinishesAt()); t = t.plusMinutes(1)){
+                found[(int) Duration.between(DAY, t).toMinutes()] = true;
+            }
+        }
+        assertThat(found).isEqualTo(expected);
+    }
+
+    private static boolean booked(List<int[]> calendar, int minute){
+        for (int[] interval: calendar){
+            if (interval[0] <= minute && minute < interval[1]){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Appointment> appointments(List<int[]> calendar){
+        List<Appointment> appointments = new ArrayList<>();
+        for (int[] interval: calendar){
+            appointments.add(new Appointment(new Patient(), new Doctor(), new Room("Dermatology"), at(interval[0]), at(interval[1])));
+        }
+        appointments.sort(Comparator.comparing(Appointment::getStartsAt));
+        return appointments;
+    }
+
+    // Intervals may overlap and reach past midnight, like the rows of a range query
+    @Provide
+    Arbitrary<List<int[]>> calendar(){
+        return Combinators.combine(Arbitraries.integers().between(-120, DAY_MINUTES), Arbitraries.integers().between(1, 300))
+                .as((start, length) -> new int[]{start, start + length})
+                .list().ofMaxSize(30);
+    }
+
+    private static LocalDateTime at(long minutes){
+        return DAY.plusMinutes(minutes);
+    }
+}
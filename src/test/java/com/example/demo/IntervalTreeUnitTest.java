@@ -0,0 +1,139 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.jqwik.api.Arbitraries;
+import net.jqwik.api.Arbitrary;
+import net.jqwik.api.Combinators;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.Provide;
+
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.booking.AppointmentIndex;
+import com.example.demo.booking.IntervalTree;
+import com.example.demo.entities.*;
+import com.example.demo.repositories.AppointmentRepository;
+
+class IntervalTreeUnitTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2023, 4, 24, 0, 0);
+
+    @Example
+    void should_find_an_appointment_enclosing_the_candidate(){
+        IntervalTree tree = new IntervalTree();
+        tree.insert(at(18 * 60), at(21 * 60), 1);
+
+        assertThat(tree.overlapsAny(at(19 * 60), at(20 * 60))).isTrue();
+        assertThat(tree.findOverlapping(at(19 * 60), at(20 * 60))).containsExactly(1L);
+    }
+
+    @Example
+    void should_not_overlap_back_to_back_appointments(){
+        IntervalTree tree = new IntervalTree();
+        tree.insert(at(19 * 60), at(20 * 60), 1);
+
+        assertThat(tree.overlapsAny(at(20 * 60), at(21 * 60))).isFalse();
+        assertThat(tree.overlapsAny(at(18 * 60), at(19 * 60))).isFalse();
+    }
+
+    @Example
+    void should_insert_an_appointment_only_once(){
+        IntervalTree tree = new IntervalTree();
+        assertThat(tree.insert(at(19 * 60), at(20 * 60), 1)).isTrue();
+        assertThat(tree.insert(at(19 * 60), at(20 * 60), 1)).isFalse();
+
+        assertThat(tree.size()).isEqualTo(1);
+        assertThat(tree.remove(at(19 * 60), 1)).isTrue();
+        assertThat(tree.overlapsAny(at(19 * 60), at(20 * 60))).isFalse();
+    }
+
+    @Example
+    void should_forget_an_appointment_booked_while_the_index_loads_once_it_is_cancelled(){
+        Appointment appointment = new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe"), new Room("Dermatology"), at(9 * 60), at(10 * 60));
+        appointment.setId(1);
+        appointment.getPatient().setId(1);
+        appointment.getDoctor().setId(1);
+
+        // Committed before the first load read it, and added once the load is done
+        AppointmentRepository repository = mock(AppointmentRepository.class);
+        when(repository.findAll()).thenReturn(Collections.singletonList(appointment));
+        AppointmentIndex index = new AppointmentIndex();
+        ReflectionTestUtils.setField(index, "appointmentRepository", repository);
+        ReflectionTestUtils.setField(index, "conflictDimensions", "room,doctor,patient");
+        ReflectionTestUtils.invokeMethod(index, "init");
+        index.add(appointment);
+
+        index.remove(appointment);
+
+        Appointment again = new Appointment(appointment.getPatient(), appointment.getDoctor(), new Room("Dermatology"), at(9 * 60), at(10 * 60));
+        assertThat(index.findConflict(again)).isEmpty();
+    }
+
+    @Property(tries = 500)
+    void should_agree_with_brute_force(@ForAll("operations") List<int[]> operations, @ForAll("queries") List<int[]> queries){
+        IntervalTree tree = new IntervalTree();
+        List<long[]> reference = new ArrayList<>();
+        long nextId = 1;
+
+        // {0, index, _} removes an existing interval, anything else inserts [start, start + length)
+        for (int[] op: operations){
+            if (op[0] == 0 && !reference.isEmpty()){
+                long[] removed = reference.remove(op[1] % reference.size());
+                assertThat(tree.remove(at(removed[0]), removed[2])).isTrue();
+            } else {
+                reference.add(new long[]{op[1], op[1] + op[2], nextId});
+                tree.insert(at(op[1]), at(op[1] + op[2]), nextId);
+                nextId++;
+            }
+        }
+
+        assertThat(tree.size()).isEqualTo(reference.size());
+
+        for (int[] query: queries){
+            long start = query[1];
+            long end = query[1] + query[2];
+            List<Long> expected = new ArrayList<>();
+            for (long[] interval: reference){
+                if (interval[0] < end && start < interval[1]){
+                    expected.add(interval[2]);
+                }
+            }
+            List<Long> found = tree.findOverlapping(at(start), at(end));
+            Collections.sort(found);
+            Collections.sort(expected);
+
+            assertThat(found).isEqualTo(expected);
+            assertThat(tree.overlapsAny(at(start), at(end))).isEqualTo(!expected.isEmpty());
+        }
+    }
+
+    @Provide
+    Arbitrary<List<int[]>> operations(){
+        return intervals(Arbitraries.integers().between(0, 3)).list().ofMaxSize(300);
+    }
+
+    @Provide
+    Arbitrary<List<int[]>> queries(){
+        return intervals(Arbitraries.just(1)).list().ofMinSize(1).ofMaxSize(50);
+    }
+
+    private static Arbitrary<int[]> intervals(Arbitrary<Integer> kinds){
+        return Combinators.combine(kinds, Arbitraries.integers().between(0, 24 * 60), Arbitraries.integers().between(1, 240))
+                .as((kind, start, length) -> new int[]{kind, start, length});
+    }
+
+    private static LocalDateTime at(long minutes){
+        return DAY.plusMinutes(minutes);
+    }
+}
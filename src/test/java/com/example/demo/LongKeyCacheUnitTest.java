@@ -0,0 +1,154 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.jqwik.api.Arbitraries;
+import net.jqwik.api.Arbitrary;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.Provide;
+
+import com.example.demo.cache.LongKeyCache;
+
+class LongKeyCacheUnitTest {
+
+    @Example
+    void should_load_once_and_serve_hits_until_the_entry_expires(){
+        AtomicLong now = new AtomicLong();
+        AtomicInteger loads = new AtomicInteger();
+        LongKeyCache<String> cache = new LongKeyCache<>(100, Duration.ofSeconds(60), now::get);
+
+        assertThat(cache.get(7, key -> "v" + loads.incrementAndGet())).isEqualTo("v1");
+        assertThat(cache.get(7, key -> "v" + loads.incrementAndGet())).isEqualTo("v1");
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(61));
+        assertThat(cache.get(7, key -> "v" + loads.incrementAndGet())).isEqualTo("v2");
+        assertThat(cache.hits()).isEqualTo(1);
+        assertThat(cache.misses()).isEqualTo(2);
+    }
+
+    @Example
+    void should_not_cache_absent_values_or_failed_loads(){
+        LongKeyCache<String> cache = new LongKeyCache<>(100, Duration.ofSeconds(60));
+
+        assertThat(cache.get(1, key -> null)).isNull();
+        assertThat(cache.get(1, key -> "found")).isEqualTo("found");
+
+        assertThatThrownBy(() -> cache.get(2, key -> { throw new IllegalStateException("down"); }))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(cache.get(2, key -> "recovered")).isEqualTo("recovered");
+    }
+
+    @Example
+    void should_load_every_time_when_switched_off(){
+        AtomicInteger loads = new AtomicInteger();
+        LongKeyCache<Integer> cache = new LongKeyCache<>(0, Duration.ofSeconds(60));
+
+        cache.get(1, key -> loads.incrementAndGet());
+        cache.get(1, key -> loads.incrementAndGet());
+        assertThat(loads).hasValue(2);
+        assertThat(cache.size()).isZero();
+    }
+
+    @Example
+    void should_coalesce_concurrent_misses_into_one_load() throws Exception {
+        LongKeyCache<String> cache = new LongKeyCache<>(100, Duration.ofSeconds(60));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 8;
+
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> cache.get(42, key -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                await(release);
+                return "patient 42";
+            })));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 1; i < callers; i++){
+                results.add(executor.submit(() -> cache.get(42, key -> "loaded twice " + loads.incrementAndGet())));
+            }
+            // Every other caller is parked on the running load before it finishes
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (cache.coalesced() < callers - 1 && System.nanoTime() < deadline){
+                Thread.yield();
+            }
+            release.countDown();
+
+            for (Future<String> result: results){
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("patient 42");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(cache.coalesced()).isEqualTo(callers - 1);
+    }
+
+    @Example
+    void should_not_cache_a_load_invalidated_while_it_ran(){
+        LongKeyCache<String> cache = new LongKeyCache<>(100, Duration.ofSeconds(60));
+
+        assertThat(cache.get(5, key -> { cache.invalidate(5); return "stale"; })).isEqualTo("stale");
+        assertThat(cache.get(5, key -> "fresh")).isEqualTo("fresh");
+    }
+
+    @Property(tries = 200)
+    void should_agree_with_a_map_and_stay_bounded(@ForAll("operations") List<long[]> operations){
+        int maxSize = 32;
+        LongKeyCache<Long> cache = new LongKeyCache<>(maxSize, Duration.ofDays(1));
+        Map<Long, Long> versions = new HashMap<>();
+
+        for (long[] operation: operations){
+            long key = operation[1];
+            if (operation[0] == 0){
+                // Whatever the cache returns must be the current version, evicted keys just load again
+                long current = versions.getOrDefault(key, 0L);
+                assertThat(cache.get(key, k -> current)).isEqualTo(current);
+            } else if (operation[0] == 1){
+                versions.merge(key, 1L, Long::sum);
+                cache.invalidate(key);
+            } else {
+                versions.replaceAll((k, v) -> v + 1);
+                cache.invalidateAll();
+            }
+            // Rounded up per segment
+            assertThat(cache.size()).isLessThanOrEqualTo(maxSize + 16);
+        }
+    }
+
+    @Provide
+    Arbitrary<List<long[]>> operations(){
+        Arbitrary<long[]> operation = Arbitraries.frequencyOf(
+                net.jqwik.api.Tuple.of(20, Arbitraries.longs().between(-200, 200).map(key -> new long[]{0, key})),
+                net.jqwik.api.Tuple.of(4, Arbitraries.longs().between(-200, 200).map(key -> new long[]{1, key})),
+                net.jqwik.api.Tuple.of(1, Arbitraries.just(new long[]{2, 0})));
+        return operation.list().ofMaxSize(400);
+    }
+
+    private static void await(CountDownLatch latch){
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+}
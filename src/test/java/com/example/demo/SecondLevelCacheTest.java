@@ -0,0 +1,103 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+
+@SpringBootTest(properties = {"spring.datasource.url=jdbc:h2:mem:l2cache", SqlStatementCounter.PROPERTY,
+        "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+        "spring.jpa.properties.hibernate.cache.use_query_cache=true",
+        "spring.jpa.properties.hibernate.cache.region.factory_class=jcache",
+        "spring.jpa.properties.hibernate.javax.cache.provider=com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider",
+        "spring.jpa.properties.hibernate.javax.cache.missing_cache_strategy=fail",
+        "spring.jpa.properties.hibernate.generate_statistics=true"})
+@AutoConfigureMockMvc
+class SecondLevelCacheTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private RoomRepository roomRepository;
+
+    private Doctor doctor;
+
+    @BeforeEach
+    void setUp(){
+        doctor = doctorRepository.save(new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        roomRepository.save(new Room("Dermatology"));
+        // Counters and regions outlive a single test
+        entityManagerFactory.unwrap(SessionFactory.class).getStatistics().clear();
+        SqlStatementCounter.reset();
+    }
+
+    @AfterEach
+    void tearDown(){
+        doctorRepository.deleteAll();
+        roomRepository.deleteAll();
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    void should_serve_repeated_reads_of_a_doctor_from_the_cache() throws Exception {
+        for (int i = 0; i < 3; i++){
+            mockMvc.perform(get("/api/doctors/" + doctor.getId()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.firstName").value("Perla"));
+        }
+        assertThat(SqlStatementCounter.statements()).as("%s", SqlStatementCounter.statements())
+                .noneMatch(sql -> sql.contains("from doctors"));
+
+        mockMvc.perform(get("/api/cache/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.enabled").value(true))
+                .andExpect(jsonPath("$.doctors.hits").value(3));
+    }
+
+    @Test
+    void should_cache_the_room_lookup_and_forget_a_deleted_room() throws Exception {
+        mockMvc.perform(get("/api/rooms/Dermatology")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/rooms/Dermatology")).andExpect(status().isOk());
+        assertThat(SqlStatementCounter.statements()).as("%s", SqlStatementCounter.statements())
+                .filteredOn(sql -> sql.contains("from room")).hasSize(1);
+
+        mockMvc.perform(delete("/api/rooms/Dermatology")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/rooms/Dermatology")).andExpect(status().isNotFound());
+
+        mockMvc.perform(post("/api/room").contentType("application/json").content("{\"roomName\":\"Dermatology\"}"))
+                .andExpect(status().isCreated());
+        mockMvc.perform(get("/api/rooms/Dermatology")).andExpect(status().isOk());
+
+        // The second read and the existence check of the delete, nothing after the eviction
+        mockMvc.perform(get("/api/cache/stats"))
+                .andExpect(jsonPath("$.queries.hits").value(2))
+                .andExpect(jsonPath("$.rooms.puts").isNumber());
+    }
+
+    @Test
+    void should_forget_a_deleted_doctor() throws Exception {
+        mockMvc.perform(get("/api/doctors/" + doctor.getId())).andExpect(status().isOk());
+        mockMvc.perform(delete("/api/doctors/" + doctor.getId())).andExpect(status().isOk());
+        mockMvc.perform(get("/api/doctors/" + doctor.getId())).andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.jqwik.api.Arbitraries;
+import net.jqwik.api.Arbitrary;
+import net.jqwik.api.Combinators;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.Provide;
+
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.booking.SlotBitmap;
+import com.example.demo.booking.SlotCalendarDetector;
+import com.example.demo.entities.*;
+import com.example.demo.repositories.AppointmentRepository;
+
+class SlotBitmapUnitTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2023, 4, 24, 0, 0);
+
+    // Spans several bitmap pages of 5 minute slots
+    private static final int HORIZON = 60 * 24 * 40;
+
+    @Example
+    void should_keep_back_to_back_appointments_apart(){
+        SlotBitmap bitmap = new SlotBitmap(5);
+        bitmap.mark("ROOM:Dermatology", at(19 * 60), at(20 * 60));
+
+        assertThat(bitmap.anySet("ROOM:Dermatology", at(20 * 60), at(21 * 60))).isFalse();
+        assertThat(bitmap.anySet("ROOM:Dermatology", at(18 * 60), at(19 * 60))).isFalse();
+        assertThat(bitmap.anySet("ROOM:Dermatology", at(19 * 60 + 59), at(21 * 60))).isTrue();
+        assertThat(bitmap.anySet("ROOM:Oncology", at(19 * 60), at(20 * 60))).isFalse();
+    }
+
+    @Example
+    void should_keep_a_partly_covered_slot_of_a_neighbour(){
+        SlotBitmap bitmap = new SlotBitmap(5);
+        bitmap.mark("ROOM:Dermatology", at(60), at(62));
+        bitmap.mark("ROOM:Dermatology", at(62), at(70));
+
+        bitmap.clear("ROOM:Dermatology", at(62), at(70));
+
+        assertThat(bitmap.anySet("ROOM:Dermatology", at(60), at(62))).isTrue();
+        assertThat(bitmap.anySet("ROOM:Dermatology", at(65), at(70))).isFalse();
+    }
+
+    @Example
+    void should_report_overlapping_appointments_of_a_calendar(){
+        SlotBitmap bitmap = new SlotBitmap(5);
+
+        assertThat(bitmap.mark("DOCTOR:1", at(60), at(120))).isFalse();
+        assertThat(bitmap.mark("DOCTOR:1", at(90), at(150))).isTrue();
+    }
+
+    @Example
+    void should_reuse_the_pages_of_cancelled_appointments(){
+        SlotBitmap bitmap = new SlotBitmap(5);
+
+        // More calendars than a chunk has pages, never more than one of them booked at a time
+        for (int room = 0; room < 3000; room++){
+            bitmap.mark("ROOM:" + room, at(9 * 60), at(10 * 60));
+            bitmap.clear("ROOM:" + room, at(9 * 60), at(10 * 60));
+        }
+
+        assertThat(bitmap.offHeapBytes()).isEqualTo(1 << 20);
+        assertThat(bitmap.anySet("ROOM:0", at(9 * 60), at(10 * 60))).isFalse();
+    }
+
+    @Property(tries = 300)
+    void should_agree_with_brute_force_on_slot_aligned_appointments(@ForAll("operations") List<int[]> operations,
+            @ForAll("queries") List<int[]> queries){
+        check(operations, queries, 5, true);
+    }
+
+    @Property(tries = 300)
+    void should_never_miss_an_overlap(@ForAll("operations") List<int[]> operations, @ForAll("queries") List<int[]> queries){
+        check(operations, queries, 1, false);
+    }
+
+    @Example
+    void should_only_query_the_calendars_that_may_be_taken(){
+        AppointmentRepository repository = mock(AppointmentRepository.class);
+        when(repository.findAll()).thenReturn(Collections.emptyList());
+        SlotCalendarDetector detector = detector(repository);
+
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        patient.setId(1);
+        patient2.setId(2);
+        doctor.setId(1);
+
+        detector.add(new Appointment(patient, doctor, new Room("Dermatology"), at(9 * 60), at(10 * 60)));
+
+        // Another room, doctor and patient at the same time, and the same ones right after
+        assertThat(detector.overlaps(new Appointment(patient2, new Doctor(), new Room("Oncology"), at(9 * 60), at(10 * 60)))).isFalse();
+        assertThat(detector.overlaps(new Appointment(patient, doctor, new Room("Dermatology"), at(10 * 60), at(11 * 60)))).isFalse();
+        verify(repository, never()).findConflictingResources(any(), any(), any(), any(), any());
+
+        when(repository.findConflictingResources(isNull(), any(), isNull(), any(), any())).thenReturn(Collections.singletonList("DOCTOR"));
+        Appointment sameDoctor = new Appointment(patient2, doctor, new Room("Oncology"), at(9 * 60 + 30), at(10 * 60 + 30));
+
+        assertThat(detector.overlaps(sameDoctor)).isTrue();
+        verify(repository).findConflictingResources(null, 1L, null, sameDoctor.getStartsAt(), sameDoctor.getFinishesAt());
+    }
+
+    @Example
+    void should_keep_a_contained_appointment_after_cancelling_the_enclosing_one(){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Doctor doctor2 = new Doctor ("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe");
+        patient.setId(1);
+        patient2.setId(2);
+        doctor.setId(1);
+        doctor2.setId(2);
+
+        // Loaded as they come from the database, the contained one covers no slot of its own
+        Appointment enclosing = new Appointment(patient, doctor, new Room("Dermatology"), at(9 * 60), at(10 * 60));
+        Appointment contained = new Appointment(patient2, doctor2, new Room("Dermatology"), at(9 * 60 + 2), at(9 * 60 + 8));
+        AppointmentRepository repository = mock(AppointmentRepository.class);
+        when(repository.findAll()).thenReturn(Arrays.asList(enclosing, contained));
+        when(repository.findConflictingResources(any(), any(), any(), any(), any())).thenReturn(Collections.singletonList("ROOM"));
+        SlotCalendarDetector detector = detector(repository);
+
+        detector.remove(enclosing);
+
+        Appointment candidate = new Appointment(new Patient(), new Doctor(), new Room("Dermatology"), at(9 * 60 + 3), at(9 * 60 + 7));
+        assertThat(detector.overlaps(candidate)).isTrue();
+    }
+
+    private static void check(List<int[]> operations, List<int[]> queries, int unit, boolean exact){
+        SlotBitmap bitmap = new SlotBitmap(5);
+        List<int[]> booked = new ArrayList<>();
+
+        // {0, index, _} cancels a booking, anything else books [start, start + length) if it is free
+        for (int[] op: operations){
+            if (op[0] == 0 && !booked.isEmpty()){
+                int[] removed = booked.remove(op[1] % booked.size());
+                bitmap.clear("ROOM:Dermatology", at(removed[0]), at(removed[1]));
+            } else {
+                int start = op[1] / unit * unit;
+                int end = start + Math.max(1, op[2] / unit) * unit;
+                if (!overlapsAny(booked, start, end)){
+                    // Unaligned cancellations leave partly covered slots behind, which may look like an overlap
+                    boolean shared = bitmap.mark("ROOM:Dermatology", at(start), at(end));
+                    if (exact){
+                        assertThat(shared).isFalse();
+                    }
+                    booked.add(new int[]{start, end});
+                }
+            }
+        }
+
+        for (int[] query: queries){
+            int start = query[1] / unit * unit;
+            int end = start + Math.max(1, query[2] / unit) * unit;
+            boolean expected = overlapsAny(booked, start, end);
+            boolean found = bitmap.anySet("ROOM:Dermatology", at(start), at(end));
+            if (exact){
+                assertThat(found).isEqualTo(expected);
+            } else if (expected){
+                assertThat(found).isTrue();
+            }
+        }
+    }
+
+    private static boolean overlapsAny(List<int[]> booked, int start, int end){
+        for (int[] interval: booked){
+            if (interval[0] < end && start < interval[1]){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static SlotCalendarDetector detector(AppointmentRepository repository){
+        SlotCalendarDetector detector = new SlotCalendarDetector();
+        ReflectionTestUtils.setField(detector, "appointmentRepository", repository);
+        ReflectionTestUtils.setField(detector, "conflictDimensions", "room,doctor,patient");
+        ReflectionTestUtils.setField(detector, "slotMinutes", 5);
+        ReflectionTestUtils.invokeMethod(detector, "init");
+        return detector;
+    }
+
+    @Provide
+    Arbitrary<List<int[]>> operations(){
+        return intervals(Arbitraries.integers().between(0, 3)).list().ofMaxSize(300);
+    }
+
+    @Provide
+    Arbitrary<List<int[]>> queries(){
+        return intervals(Arbitraries.just(1)).list().ofMinSize(1).ofMaxSize(50);
+    }
+
+    private static Arbitrary<int[]> intervals(Arbitrary<Integer> kinds){
+        return Combinators.combine(kinds, Arbitraries.integers().between(0, HORIZON), Arbitraries.integers().between(1, 60 * 24 * 2))
+                .as((kind, start, length) -> new int[]{kind, start, length});
+    }
+
+    private static LocalDateTime at(long minutes){
+        return DAY.plusMinutes(minutes);
+    }
+}
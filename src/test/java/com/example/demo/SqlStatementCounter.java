@@ -0,0 +1,45 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Records every SQL statement Hibernate prepares. Register it with
+ * {@code spring.jpa.properties.hibernate.session_factory.statement_inspector},
+ * Hibernate creates the instance itself, so the recording is static.
+ */
+public class SqlStatementCounter implements StatementInspector {
+
+    private static final List<String> statements = new ArrayList<>();
+
+    public static final String PROPERTY = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+            + "com.example.demo.SqlStatementCounter";
+
+    @Override
+    public String inspect(String sql){
+        synchronized (statements){
+            statements.add(sql);
+        }
+        return sql;
+    }
+
+    public static void reset(){
+        synchronized (statements){
+            statements.clear();
+        }
+    }
+
+    public static List<String> statements(){
+        synchronized (statements){
+            return new ArrayList<>(statements);
+        }
+    }
+
+    public static int count(){
+        synchronized (statements){
+            return statements.size();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.example.demo.controllers.SseFanout;
+
+class SseFanoutUnitTest {
+
+    private final ExecutorService senders = Executors.newFixedThreadPool(2);
+
+    @AfterEach
+    void tearDown(){
+        senders.shutdownNow();
+    }
+
+    // Records the text of every event it is sent, a slow one holds the sender until released
+    static class RecordingEmitter extends SseEmitter {
+        final List<String> sent = new CopyOnWriteArrayList<>();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch released;
+        final CountDownLatch completed = new CountDownLatch(1);
+        volatile Thread completedOn;
+
+        RecordingEmitter(boolean slow){
+            this.released = new CountDownLatch(slow ? 1 : 0);
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            entered.countDown();
+            try {
+                released.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+            sent.add(builder.build().stream().map(part -> String.valueOf(part.getData())).collect(Collectors.joining()));
+        }
+
+        @Override
+        public synchronized void complete(){
+            completedOn = Thread.currentThread();
+            completed.countDown();
+            super.complete();
+        }
+
+        void awaitSent(int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (sent.size() < count && System.nanoTime() < deadline){
+                Thread.sleep(5);
+            }
+        }
+    }
+
+    @Test
+    void should_deliver_in_order_to_matching_subscribers_only() throws Exception {
+        SseFanout<String> fanout = new SseFanout<>(16, SseFanout.Overflow.DROP, 10, senders);
+        RecordingEmitter all = new RecordingEmitter(false);
+        RecordingEmitter dermatology = new RecordingEmitter(false);
+        fanout.subscribe(all, event -> true);
+        fanout.subscribe(dermatology, event -> event.startsWith("Dermatology"));
+
+        for (int i = 0; i < 10; i++){
+            String event = (i % 2 == 0 ? "Dermatology " : "Cardiology ") + i;
+            fanout.publish(event, i + 1, "created", () -> "\"" + event + "\"");
+        }
+        all.awaitSent(10);
+        dermatology.awaitSent(5);
+
+        assertThat(all.sent).hasSize(10);
+        assertThat(all.sent.get(0)).contains("id:1").contains("event:created").contains("Dermatology 0");
+        assertThat(all.sent.get(9)).contains("id:10").contains("Cardiology 9");
+        assertThat(dermatology.sent).hasSize(5).allMatch(text -> text.contains("Dermatology")).noneMatch(text -> text.contains("Cardiology"));
+    }
+
+    @Test
+    void should_tell_a_slow_subscriber_how_many_events_it_missed() throws Exception {
+        SseFanout<String> fanout = new SseFanout<>(2, SseFanout.Overflow.DROP, 10, senders);
+        RecordingEmitter slow = new RecordingEmitter(true);
+        SseFanout<String>.Subscription subscription = fanout.subscribe(slow, event -> true);
+
+        fanout.publish("first", 1, "created", () -> "1");
+        assertThat(slow.entered.await(10, TimeUnit.SECONDS)).isTrue();
+        // The sender is stuck on the first event: two fit the queue, two do not
+        for (int i = 2; i <= 5; i++){
+            String data = String.valueOf(i);
+            fanout.publish(data, i, "created", () -> data);
+        }
+        assertThat(subscription.dropped()).isEqualTo(2);
+        assertThat(fanout.overflowed()).isEqualTo(2);
+
+        slow.released.countDown();
+        slow.awaitSent(4);
+        assertThat(slow.sent).hasSize(4);
+        assertThat(slow.sent.get(1)).contains("event:dropped").contains("data:2");
+        assertThat(slow.sent.get(2)).contains("data:2");
+        assertThat(slow.sent.get(3)).contains("data:3");
+        assertThat(subscription.isClosed()).isFalse();
+    }
+
+    @Test
+    void should_disconnect_a_slow_subscriber_without_holding_up_the_others() throws Exception {
+        SseFanout<String> fanout = new SseFanout<>(2, SseFanout.Overflow.DISCONNECT, 10, senders);
+        RecordingEmitter slow = new RecordingEmitter(true);
+        RecordingEmitter fast = new RecordingEmitter(false);
+        SseFanout<String>.Subscription subscription = fanout.subscribe(slow, event -> true);
+        fanout.subscribe(fast, event -> true);
+
+        fanout.publish("first", 1, "created", () -> "1");
+        assertThat(slow.entered.await(10, TimeUnit.SECONDS)).isTrue();
+        // Paced to the fast subscriber, which keeps its queue empty
+        for (int i = 2; i <= 5; i++){
+            String data = String.valueOf(i);
+            fanout.publish(data, i, "created", () -> data);
+            fast.awaitSent(i);
+        }
+
+        assertThat(subscription.isClosed()).isTrue();
+        // Completed by a sender, not by the thread that published
+        assertThat(slow.completed.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(slow.completedOn).isNotSameAs(Thread.currentThread());
+        assertThat(fanout.subscribers()).isEqualTo(1);
+        fast.awaitSent(5);
+        assertThat(fast.sent).hasSize(5);
+        slow.released.countDown();
+    }
+
+    @Test
+    void should_refuse_subscribers_over_the_limit_and_render_only_for_takers(){
+        SseFanout<String> fanout = new SseFanout<>(2, SseFanout.Overflow.DROP, 1, senders);
+        assertThat(fanout.subscribe(new RecordingEmitter(false), event -> false)).isNotNull();
+        assertThat(fanout.subscribe(new RecordingEmitter(false), event -> true)).isNull();
+
+        fanout.publish("ignored", 1, "created", () -> {
+            throw new AssertionError("rendered for nobody");
+        });
+    }
+
+    @Test
+    void should_disconnect_a_subscriber_whose_emitter_fails() throws Exception {
+        SseFanout<String> fanout = new SseFanout<>(16, SseFanout.Overflow.DROP, 10, senders);
+        RecordingEmitter healthy = new RecordingEmitter(false);
+        SseFanout<String>.Subscription broken = fanout.subscribe(new RecordingEmitter(false){
+            @Override
+            public void send(SseEventBuilder builder){
+                throw new UnsupportedOperationException("broken converter");
+            }
+        }, event -> true);
+        fanout.subscribe(healthy, event -> true);
+
+        fanout.publish("first", 1, "created", () -> "\"first\"");
+        fanout.publish("second", 0, "created", () -> "\"second\"");
+        healthy.awaitSent(2);
+
+        assertThat(healthy.sent).hasSize(2);
+        // Published without an id
+        assertThat(healthy.sent.get(1)).doesNotContain("id:");
+        assertThat(broken.isClosed()).isTrue();
+        assertThat(fanout.subscribers()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.booking.SweepLine;
+import com.example.demo.entities.*;
+
+class SweepLineUnitTest {
+
+    private static final LocalDateTime NINE = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+    private final Room room = new Room("Dermatology");
+
+    @Test
+    void should_accept_back_to_back_candidates(){
+        Appointment first = at(0, 60);
+        Appointment second = at(60, 120);
+
+        List<Appointment> conflicts = SweepLine.firstConflicts(Collections.emptyList(), Arrays.asList(first, second));
+
+        assertThat(conflicts).containsExactly(null, null);
+    }
+
+    @Test
+    void should_reject_candidates_overlapping_earlier_candidates(){
+        Appointment first = at(0, 60);
+        Appointment sameStart = at(0, 30);
+        Appointment inside = at(10, 20);
+        Appointment after = at(60, 90);
+
+        List<Appointment> conflicts = SweepLine.firstConflicts(Collections.emptyList(), Arrays.asList(first, sameStart, inside, after));
+
+        assertThat(conflicts).containsExactly(null, first, first, null);
+    }
+
+    @Test
+    void should_reject_candidates_overlapping_existing_appointments(){
+        Appointment enclosing = at(-60, 120);
+        Appointment later = at(180, 240);
+        enclosing.setId(1);
+        later.setId(2);
+
+        Appointment inside = at(0, 60);
+        Appointment endsInsideLater = at(150, 200);
+        Appointment afterAll = at(240, 300);
+
+        List<Appointment> conflicts = SweepLine.firstConflicts(Arrays.asList(enclosing, later),
+                Arrays.asList(inside, endsInsideLater, afterAll));
+
+        assertThat(conflicts).containsExactly(enclosing, later, null);
+    }
+
+    @Test
+    void should_not_let_a_rejected_candidate_block_later_ones(){
+        Appointment existing = at(0, 60);
+        Appointment rejected = at(30, 180);
+        Appointment fits = at(90, 120);
+
+        List<Appointment> conflicts = SweepLine.firstConflicts(Collections.singletonList(existing), Arrays.asList(rejected, fits));
+
+        assertThat(conflicts).containsExactly(existing, null);
+    }
+
+    private Appointment at(int fromMinute, int toMinute){
+        return new Appointment(new Patient(), new Doctor(), room, NINE.plusMinutes(fromMinute), NINE.plusMinutes(toMinute));
+    }
+}
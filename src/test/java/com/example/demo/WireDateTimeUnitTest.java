@@ -0,0 +1,133 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import net.jqwik.api.Arbitraries;
+import net.jqwik.api.Arbitrary;
+import net.jqwik.api.Combinators;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.Provide;
+
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.example.demo.entities.*;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
+import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
+
+class WireDateTimeUnitTest {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+    private final ObjectMapper wire = wireMapper();
+    private final ObjectMapper stock = Jackson2ObjectMapperBuilder.json()
+            .serializers(new LocalDateTimeSerializer(FORMATTER))
+            .deserializers(new LocalDateTimeDeserializer(FORMATTER))
+            .build();
+
+    @Example
+    void should_write_the_wire_format() throws Exception {
+        assertThat(wire.writeValueAsString(LocalDateTime.of(2023, 4, 24, 9, 5))).isEqualTo("\"09:05 24/04/2023\"");
+        assertThat(wire.readValue("\"09:05 24/04/2023\"", LocalDateTime.class)).isEqualTo(LocalDateTime.of(2023, 4, 24, 9, 5));
+    }
+
+    @Property
+    void should_write_what_the_formatter_writes(@ForAll("dateTimes") LocalDateTime value) throws Exception {
+        assertThat(wire.writeValueAsString(value)).isEqualTo(stock.writeValueAsString(value));
+    }
+
+    @Property
+    void should_write_appointments_as_the_formatter_does(@ForAll("dateTimes") LocalDateTime value) throws Exception {
+        Appointment appointment = new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"), new Room("Dermatology"), value, value.plusMinutes(30));
+
+        assertThat(wire.writeValueAsString(appointment)).isEqualTo(stock.writeValueAsString(appointment));
+    }
+
+    @Property
+    void should_read_what_the_formatter_writes(@ForAll("dateTimes") LocalDateTime value) throws Exception {
+        String json = stock.writeValueAsString(value);
+
+        assertThat(read(wire, json)).isEqualTo(read(stock, json));
+        // yyyy is the year of era, years before 1 do not come back
+        if (value.getYear() >= 1){
+            assertThat(read(wire, json)).isEqualTo(value);
+        }
+    }
+
+    @Property
+    void should_accept_and_reject_what_the_formatter_does(@ForAll("texts") String text) throws Exception {
+        String json = stock.writeValueAsString(text);
+
+        assertThat(read(wire, json)).isEqualTo(read(stock, json));
+    }
+
+    @Example
+    void should_leave_other_patterns_to_the_formatter() throws Exception {
+        Dotted dotted = new Dotted();
+        dotted.at = LocalDateTime.of(2023, 4, 24, 9, 5);
+
+        String json = wire.writeValueAsString(dotted);
+
+        assertThat(json).isEqualTo("{\"at\":\"24.04.2023 09:05\"}");
+        assertThat(wire.readValue(json, Dotted.class).at).isEqualTo(dotted.at);
+        assertThat(read(wire, "{\"at\":\"09:05 24/04/2023\"}")).isEqualTo(read(stock, "{\"at\":\"09:05 24/04/2023\"}"));
+    }
+
+    // The value or the exception type, so both sides compare by equals
+    private static Object read(ObjectMapper mapper, String json){
+        try {
+            return json.startsWith("{") ? mapper.readValue(json, Dotted.class).at : mapper.readValue(json, LocalDateTime.class);
+        } catch (Exception e){
+            return e.getClass();
+        }
+    }
+
+    private static ObjectMapper wireMapper(){
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        new JacksonConfiguration().jackson2ObjectMapperBuilderCustomizer().customize(builder);
+        return builder.build();
+    }
+
+    @Provide
+    Arbitrary<LocalDateTime> dateTimes(){
+        return Combinators.combine(
+                Arbitraries.integers().between(-20000, 20000),
+                Arbitraries.integers().between(1, 365),
+                Arbitraries.integers().between(0, 23),
+                Arbitraries.integers().between(0, 59))
+                .as((year, day, hour, minute) -> LocalDateTime.of(year, 1, 1, hour, minute).plusDays(day - 1))
+                .edgeCases(edges -> edges.add(LocalDateTime.of(1, 1, 1, 0, 0)).add(LocalDateTime.of(9999, 12, 31, 23, 59))
+                        .add(LocalDateTime.of(0, 1, 1, 0, 0)).add(LocalDateTime.of(10000, 1, 1, 0, 0)));
+    }
+
+    // Well formed texts with every field pushed a little out of range, and broken layouts
+    @Provide
+    Arbitrary<String> texts(){
+        Arbitrary<String> fields = Combinators.combine(
+                Arbitraries.integers().between(0, 25),
+                Arbitraries.integers().between(0, 61),
+                Arbitraries.integers().between(0, 32),
+                Arbitraries.integers().between(0, 13),
+                Arbitraries.integers().between(0, 10001))
+                .as((hour, minute, day, month, year) -> String.format("%02d:%02d %02d/%02d/%04d", hour, minute, day, month, year));
+        Arbitrary<String> broken = Combinators.combine(fields, Arbitraries.integers().between(0, 15),
+                Arbitraries.of(' ', '-', ':', '/', 'x', '٠', '+'))
+                .as((text, at, replacement) -> text.substring(0, at) + replacement + text.substring(at + 1));
+        return Arbitraries.oneOf(fields, broken,
+                fields.map(text -> " " + text), fields.map(text -> text + " "), fields.map(text -> "+" + text),
+                Arbitraries.of("", " ", "24:00 24/04/2023", "00:00 29/02/2023", "00:00 29/02/2024", "00:00 29/02/1900",
+                        "00:00 29/02/2000", "00:00 31/04/2023", "00:00 01/01/0000", "00:00 01/01/10000", "9:05 24/04/2023"));
+    }
+
+    static class Dotted {
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "dd.MM.yyyy HH:mm")
+        public LocalDateTime at;
+    }
+}